@@ -0,0 +1,65 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.fastactor;
+
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.Behavior;
+import akka.actor.typed.javadsl.ActorContext;
+import akka.actor.typed.javadsl.Behaviors;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Root behavior of the Akka system used by benchmarks. Akka actors can be spawned only by other actors,
+ * so the benchmark thread asks the guardian to spawn workloads and to stop them after each invocation.
+ * Without stopping, every invocation would leave its actors alive until the end of the trial.
+ */
+final class AkkaGuardian {
+    interface Command {}
+
+    static final class Spawn<T> implements Command {
+        final Function<ActorContext<Command>, ActorRef<T>> spawner;
+        final CompletableFuture<ActorRef<T>> spawned;
+
+        Spawn(Function<ActorContext<Command>, ActorRef<T>> spawner) {
+            this.spawner = spawner;
+            this.spawned = new CompletableFuture<>();
+        }
+
+        private void run(ActorContext<Command> context) {
+            spawned.complete(spawner.apply(context));
+        }
+    }
+
+    static final class StopChildren implements Command {
+    }
+
+    static Behavior<Command> create() {
+        return Behaviors.setup(context -> Behaviors.receive(Command.class)
+                .onMessage(Spawn.class, spawn -> {
+                    spawn.run(context);
+                    return Behaviors.same();
+                })
+                .onMessage(StopChildren.class, stop -> {
+                    context.getChildren().forEach(context::stop);
+                    return Behaviors.same();
+                })
+                .build());
+    }
+
+    private AkkaGuardian() {
+    }
+}
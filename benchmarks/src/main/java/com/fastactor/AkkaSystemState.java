@@ -0,0 +1,74 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.javadsl.ActorContext;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * One Akka system shared by all invocations of a trial, so that dispatcher start-up is not measured.
+ */
+@State(Scope.Benchmark)
+public class AkkaSystemState {
+    private ActorSystem<AkkaGuardian.Command> actorSystem;
+    private long spawnCounter;
+
+    @Setup
+    public void setUp() {
+        actorSystem = ActorSystem.create(AkkaGuardian.create(), "benchmark");
+    }
+
+    @TearDown
+    public void tearDown() throws ExecutionException, InterruptedException {
+        actorSystem.terminate();
+        actorSystem.getWhenTerminated().toCompletableFuture().get();
+    }
+
+    /**
+     * Spawns an actor as a child of the guardian and waits until it exists.
+     *
+     * @param spawner creates the actor in the guardian context
+     * @param <T>     base type of messages of spawned actor
+     * @return ActorRef of spawned actor
+     */
+    <T> ActorRef<T> spawn(Function<ActorContext<AkkaGuardian.Command>, ActorRef<T>> spawner)
+            throws ExecutionException, InterruptedException {
+        AkkaGuardian.Spawn<T> spawn = new AkkaGuardian.Spawn<>(spawner);
+        actorSystem.tell(spawn);
+        return spawn.spawned.get();
+    }
+
+    /**
+     * @param prefix readable part of the name
+     * @return name which is unique among children of the guardian
+     */
+    String uniqueName(String prefix) {
+        return prefix + "-" + spawnCounter++;
+    }
+
+    /**
+     * Stops everything spawned by the previous invocation.
+     */
+    void stopChildren() {
+        actorSystem.tell(new AkkaGuardian.StopChildren());
+    }
+}
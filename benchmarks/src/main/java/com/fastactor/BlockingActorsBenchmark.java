@@ -0,0 +1,116 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Actors which block for a while on every message (like a JDBC call) run by the default {@link ForkJoinDispatcher}
+ * and by {@link VirtualThreadDispatcher}. One operation is one message sent to every actor and processed.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BlockingActorsBenchmark {
+
+    public enum DispatcherType {
+        FORK_JOIN,
+        VIRTUAL_THREADS
+    }
+
+    private static class BlockingActor extends Actor<CountDownLatch> {
+        private final int blockingMillis;
+
+        BlockingActor(String name, int blockingMillis) {
+            super(name);
+            this.blockingMillis = blockingMillis;
+        }
+
+        @Override
+        protected void onMessage(CountDownLatch message) {
+            try {
+                Thread.sleep(blockingMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            message.countDown();
+        }
+    }
+
+    @Param
+    public DispatcherType dispatcher;
+
+    @Param({"100"})
+    public int actorCount;
+
+    @Param({"1"})
+    public int blockingMillis;
+
+    private final List<ActorRef<CountDownLatch>> actors = new ArrayList<>();
+    private ActorSystem actorSystem;
+    private VirtualThreadDispatcher virtualThreadDispatcher;
+
+    @Setup
+    public void setUp() {
+        actorSystem = new ActorSystem(Runtime.getRuntime().availableProcessors());
+        Dispatcher actorDispatcher = actorSystem.getDefaultDispatcher();
+        if (dispatcher == DispatcherType.VIRTUAL_THREADS) {
+            virtualThreadDispatcher = new VirtualThreadDispatcher();
+            actorDispatcher = virtualThreadDispatcher;
+        }
+        for (int a = 0; a < actorCount; a++) {
+            actors.add(actorSystem.actorOf(new BlockingActor("Blocking-" + a, blockingMillis), actorDispatcher));
+        }
+    }
+
+    @Benchmark
+    public void fastActor() throws InterruptedException {
+        CountDownLatch countDownLatch = new CountDownLatch(actors.size());
+        for (ActorRef<CountDownLatch> actor : actors) {
+            actor.tell(countDownLatch);
+        }
+
+        countDownLatch.await();
+    }
+
+    @TearDown
+    public void tearDown() {
+        actorSystem.terminate(10, TimeUnit.SECONDS);
+        // the system doesn't own dispatchers passed to actorOf
+        if (virtualThreadDispatcher != null) {
+            virtualThreadDispatcher.shutdown();
+            virtualThreadDispatcher = null;
+        }
+        actors.clear();
+    }
+}
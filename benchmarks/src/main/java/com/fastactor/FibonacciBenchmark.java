@@ -0,0 +1,66 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recursive spawn tree computing F(n): every node of the tree is a new actor.
+ * One operation is one computed number.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FibonacciBenchmark {
+
+    @Param({"20"})
+    public int n;
+
+    /**
+     * Actors of the tree stop themselves when they send their results.
+     */
+    @Benchmark
+    public long fastActor(FastActorSystemState state) throws InterruptedException {
+        BlockingQueue<Long> results = new LinkedBlockingDeque<>();
+        state.actorSystem.actorOf(new Fibonacci("Fibonacci-" + n)).tell(new Fibonacci.Compute(n, results));
+        return results.take();
+    }
+
+    @Benchmark
+    public long akka(AkkaSystemState state) throws InterruptedException, ExecutionException {
+        BlockingQueue<Long> results = new LinkedBlockingDeque<>();
+        state.spawn(context -> context.spawn(AkkaFibonacci.create(), state.uniqueName("Fibonacci-" + n)))
+                .tell(new AkkaFibonacci.Compute(n, results));
+        long result = results.take();
+        state.stopChildren();
+        return result;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+import org.jctools.queues.MpscArrayQueue;
+import org.jctools.queues.MpscLinkedQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Cost of a message passing through a mailbox: a batch of preallocated messages is enqueued and then dequeued.
+ * Run it with {@code -prof gc}, {@code gc.alloc.rate.norm} is the number of bytes allocated by the mailbox
+ * per message, since messages themselves are reused.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class MailboxBenchmark {
+    private static final int BATCH = 1024;
+
+    public enum MailboxType {
+        MPSC_LINKED(MpscLinkedQueue::new),
+        MPSC_ARRAY(() -> new MpscArrayQueue<>(BATCH)),
+        INTRUSIVE(IntrusiveMailbox::new);
+
+        final Supplier<Queue<Message>> factory;
+
+        MailboxType(Supplier<Queue<Message>> factory) {
+            this.factory = factory;
+        }
+    }
+
+    static final class Message extends Envelope {
+    }
+
+    @Param
+    public MailboxType mailboxType;
+
+    private Queue<Message> mailbox;
+    private Message[] messages;
+
+    @Setup
+    public void setup() {
+        mailbox = mailboxType.factory.get();
+        messages = new Message[BATCH];
+        for (int m = 0; m < BATCH; m++) {
+            messages[m] = new Message();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void offerPoll(Blackhole blackhole) {
+        for (Message message : messages) {
+            mailbox.offer(message);
+        }
+        Message message;
+        while ((message = mailbox.poll()) != null) {
+            blackhole.consume(message);
+        }
+    }
+}
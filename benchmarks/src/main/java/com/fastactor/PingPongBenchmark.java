@@ -0,0 +1,105 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+import akka.actor.typed.javadsl.Behaviors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ping-pong workloads of {@link ActorSystemAdvancedTest} and {@link AkkaActorSystemAdvancedTest}
+ * measured side by side. One operation is one complete run of the workload.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PingPongBenchmark {
+
+    public enum Workload {
+        /**
+         * A lot of ping-pong pairs exchanging a few messages (manyActorsFewMessages).
+         */
+        MANY_ACTORS_FEW_MESSAGES(10_000, 100, 1),
+        /**
+         * A few ping-pong pairs exchanging a lot of messages (fewActorsManyMessages).
+         */
+        FEW_ACTORS_MANY_MESSAGES(100, 10_000, 1),
+        /**
+         * Every ping talks to many pongs (manyMessagesFromPong).
+         */
+        FAN_OUT(100, 100, 100);
+
+        final int actorPingCount;
+        final int messageCount;
+        final int pongPerPing;
+
+        Workload(int actorPingCount, int messageCount, int pongPerPing) {
+            this.actorPingCount = actorPingCount;
+            this.messageCount = messageCount;
+            this.pongPerPing = pongPerPing;
+        }
+    }
+
+    @Param
+    public Workload workload;
+
+    @Benchmark
+    public void fastActor(FastActorSystemState state) throws InterruptedException {
+        CountDownLatch countDownLatch = new CountDownLatch(workload.actorPingCount * workload.pongPerPing);
+        List<ActorRef<Ping.Message>> pings = new ArrayList<>(workload.actorPingCount);
+        for (int a = 0; a < workload.actorPingCount; a++) {
+            pings.add(state.actorSystem.actorOf(new Ping(workload.messageCount, countDownLatch,
+                    "Ping-" + a, "Pong-" + a, workload.pongPerPing)));
+        }
+
+        countDownLatch.await();
+        // pings stop their pongs
+        for (ActorRef<Ping.Message> ping : pings) {
+            state.actorSystem.stop(ping);
+        }
+    }
+
+    @Benchmark
+    public void akka(AkkaSystemState state) throws InterruptedException, ExecutionException {
+        CountDownLatch countDownLatch = new CountDownLatch(workload.actorPingCount * workload.pongPerPing);
+        state.spawn(context -> context.spawn(Behaviors.setup(run -> {
+            for (int a = 0; a < workload.actorPingCount; a++) {
+                run.spawn(AkkaPing.create(countDownLatch, workload.messageCount, workload.pongPerPing,
+                        "Pong-" + a, null), "Ping-" + a);
+            }
+
+            return Behaviors.empty();
+        }), state.uniqueName("PingPong")));
+
+        countDownLatch.await();
+        state.stopChildren();
+    }
+}
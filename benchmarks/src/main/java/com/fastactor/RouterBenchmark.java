@@ -0,0 +1,321 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+import akka.actor.AbstractActor;
+import akka.actor.Props;
+import akka.actor.typed.Behavior;
+import akka.actor.typed.javadsl.ActorContext;
+import akka.actor.typed.javadsl.Adapter;
+import akka.actor.typed.javadsl.Behaviors;
+import akka.actor.typed.javadsl.Routers;
+import akka.routing.BalancingPool;
+import akka.routing.Pool;
+import akka.routing.ScatterGatherFirstCompletedPool;
+import akka.routing.SmallestMailboxPool;
+import akka.routing.TailChoppingPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Messages sent from outside of the actor system through a router to a pool of routees.
+ * One operation is delivery of all messages of a batch to routees.
+ * <p>
+ * Benchmark {@code fastActorCallerThread} routes on the sending thread, see {@link Router#setRoutingOnCallerThread},
+ * {@code fastActor} routes through the router actor.
+ * <p>
+ * Scatter-gather and tail-chopping routers deliver replies of routees, so a message is a request
+ * with a reply ActorRef and its delivery is the first reply.
+ * <p>
+ * Akka 2.6 has no broadcast pool for typed actors, so the Akka broadcast router forwards
+ * every message to all its children the same way as the classic BroadcastPool does.
+ * Other routing logics which typed actors don't have are classic pools of classic routees, the classic requester
+ * sends requests to them and counts replies.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RouterBenchmark {
+
+    public enum Logic {
+        BROADCAST,
+        ROUND_ROBIN,
+        CONSISTENT_HASHING,
+        SMALLEST_MAILBOX,
+        BALANCING,
+        SCATTER_GATHER,
+        TAIL_CHOPPING
+    }
+
+    private static final long TAIL_CHOPPING_INTERVAL_MILLIS = 10;
+    private static final Duration AKKA_REPLY_TIMEOUT = Duration.ofSeconds(10);
+
+    @Param
+    public Logic logic;
+
+    @Param({"8"})
+    public int poolSize;
+
+    @Param({"100000"})
+    public int messageCount;
+
+    private volatile CountDownLatch countDownLatch;
+    // created by the first invocation, so a trial starts only the actor system which is measured
+    private com.fastactor.ActorRef<Object> fastActorRouter;
+    private com.fastactor.ActorRef<Object> fastActorCallerThreadRouter;
+    private akka.actor.typed.ActorRef<Long> akkaRouter;
+    private final com.fastactor.ActorRef<Long> replies = reply -> countDownLatch.countDown();
+
+    private static final class Request {
+        final long value;
+        final com.fastactor.ActorRef<Long> replyTo;
+
+        Request(long value, com.fastactor.ActorRef<Long> replyTo) {
+            this.value = value;
+            this.replyTo = replyTo;
+        }
+    }
+
+    /**
+     * Counts messages, requests are answered instead.
+     */
+    private class CountingActor extends Actor<Object> {
+        @Override
+        protected void onMessage(Object message) {
+            if (message instanceof Request) {
+                Request request = (Request) message;
+                request.replyTo.tell(request.value);
+            } else {
+                countDownLatch.countDown();
+            }
+        }
+    }
+
+    private class AkkaClassicCountingActor extends AbstractActor {
+        @Override
+        public Receive createReceive() {
+            return receiveBuilder().match(Long.class, message -> countDownLatch.countDown()).build();
+        }
+    }
+
+    private static final class AkkaReply {
+        final long value;
+
+        AkkaReply(long value) {
+            this.value = value;
+        }
+    }
+
+    private static class AkkaClassicReplyingActor extends AbstractActor {
+        @Override
+        public Receive createReceive() {
+            return receiveBuilder()
+                    .match(Long.class, message -> getSender().tell(new AkkaReply(message), getSelf()))
+                    .build();
+        }
+    }
+
+    /**
+     * Sends messages to the router as requests and counts replies.
+     */
+    private class AkkaClassicRequester extends AbstractActor {
+        private final akka.actor.ActorRef router;
+
+        AkkaClassicRequester(Pool pool) {
+            Props routeeProps = Props.create(AkkaClassicReplyingActor.class, AkkaClassicReplyingActor::new);
+            router = getContext().actorOf(pool.props(routeeProps), "Router");
+        }
+
+        @Override
+        public Receive createReceive() {
+            return receiveBuilder()
+                    .match(Long.class, message -> router.tell(message, getSelf()))
+                    .match(AkkaReply.class, reply -> countDownLatch.countDown())
+                    .build();
+        }
+    }
+
+    private Behavior<Long> akkaCountingActor() {
+        return Behaviors.receive(Long.class).onAnyMessage(message -> {
+            countDownLatch.countDown();
+            return Behaviors.same();
+        }).build();
+    }
+
+    private Behavior<Long> akkaBroadcastRouter() {
+        return Behaviors.setup(context -> {
+            List<akka.actor.typed.ActorRef<Long>> routees = new ArrayList<>(poolSize);
+            for (int r = 0; r < poolSize; r++) {
+                routees.add(context.spawn(akkaCountingActor(), "Routee-" + r));
+            }
+
+            return Behaviors.receive(Long.class).onAnyMessage(message -> {
+                for (akka.actor.typed.ActorRef<Long> routee : routees) {
+                    routee.tell(message);
+                }
+                return Behaviors.same();
+            }).build();
+        });
+    }
+
+    private com.fastactor.ActorRef<Object> createFastActorRouter(ActorSystem actorSystem, boolean routingOnCallerThread) {
+        Router.RoutingLogic<Object, Object> routingLogic;
+        switch (logic) {
+            case BROADCAST:
+                routingLogic = new Router.BroadcastRoutingLogic<>();
+                break;
+            case ROUND_ROBIN:
+                routingLogic = new Router.RoundRobinRoutingLogic<>();
+                break;
+            case CONSISTENT_HASHING:
+                routingLogic = new Router.ConsistentHashingRoutingLogic<>(message -> (Long) message, 10);
+                break;
+            case SMALLEST_MAILBOX:
+                routingLogic = new Router.SmallestMailboxRoutingLogic<>();
+                break;
+            case BALANCING:
+                routingLogic = new Router.BalancingRoutingLogic<>();
+                break;
+            case SCATTER_GATHER:
+                routingLogic = new Router.ScatterGatherFirstCompletedRoutingLogic<Object, Object, Long>(
+                        message -> ((Request) message).replyTo,
+                        (message, replyTo) -> new Request(((Request) message).value, replyTo));
+                break;
+            case TAIL_CHOPPING:
+                routingLogic = new Router.TailChoppingRoutingLogic<Object, Object, Long>(actorSystem,
+                        TAIL_CHOPPING_INTERVAL_MILLIS, TimeUnit.MILLISECONDS, message -> ((Request) message).replyTo,
+                        (message, replyTo) -> new Request(((Request) message).value, replyTo));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown routing logic " + logic);
+        }
+
+        Router<Object, Object> router = new Router<>("Router", routingLogic, CountingActor::new, poolSize);
+        router.setRoutingOnCallerThread(routingOnCallerThread);
+        return actorSystem.actorOf(router);
+    }
+
+    private akka.actor.typed.ActorRef<Long> createAkkaRouter(AkkaSystemState akkaState)
+            throws ExecutionException, InterruptedException {
+        Behavior<Long> routerBehavior;
+        switch (logic) {
+            case BROADCAST:
+                routerBehavior = akkaBroadcastRouter();
+                break;
+            case ROUND_ROBIN:
+                routerBehavior = Routers.pool(poolSize, akkaCountingActor()).withRoundRobinRouting();
+                break;
+            case CONSISTENT_HASHING:
+                routerBehavior = Routers.pool(poolSize, akkaCountingActor())
+                        .withConsistentHashingRouting(10, String::valueOf);
+                break;
+            case SMALLEST_MAILBOX:
+                return akkaState.spawn(context -> akkaClassicRouter(context, new SmallestMailboxPool(poolSize)));
+            case BALANCING:
+                return akkaState.spawn(context -> akkaClassicRouter(context, new BalancingPool(poolSize)));
+            case SCATTER_GATHER:
+                return akkaState.spawn(context -> akkaClassicRequester(context,
+                        new ScatterGatherFirstCompletedPool(poolSize, AKKA_REPLY_TIMEOUT)));
+            case TAIL_CHOPPING:
+                return akkaState.spawn(context -> akkaClassicRequester(context, new TailChoppingPool(poolSize,
+                        AKKA_REPLY_TIMEOUT, Duration.ofMillis(TAIL_CHOPPING_INTERVAL_MILLIS))));
+            default:
+                throw new IllegalArgumentException("Unknown routing logic " + logic);
+        }
+
+        return akkaState.spawn(context -> context.spawn(routerBehavior, "Router"));
+    }
+
+    private akka.actor.typed.ActorRef<Long> akkaClassicRouter(ActorContext<AkkaGuardian.Command> context, Pool pool) {
+        Props routeeProps = Props.create(AkkaClassicCountingActor.class, AkkaClassicCountingActor::new);
+        return Adapter.toTyped(Adapter.actorOf(context, pool.props(routeeProps), "Router"));
+    }
+
+    private akka.actor.typed.ActorRef<Long> akkaClassicRequester(ActorContext<AkkaGuardian.Command> context, Pool pool) {
+        Props requesterProps = Props.create(AkkaClassicRequester.class, () -> new AkkaClassicRequester(pool));
+        return Adapter.toTyped(Adapter.actorOf(context, requesterProps, "Requester"));
+    }
+
+    private boolean isRequestReply() {
+        return logic == Logic.SCATTER_GATHER || logic == Logic.TAIL_CHOPPING;
+    }
+
+    private Object fastActorMessage(long value) {
+        return isRequestReply() ? new Request(value, replies) : value;
+    }
+
+    private int expectedDeliveries() {
+        return logic == Logic.BROADCAST ? messageCount * poolSize : messageCount;
+    }
+
+    @Benchmark
+    public void fastActor(FastActorSystemState state) throws InterruptedException {
+        if (fastActorRouter == null) {
+            fastActorRouter = createFastActorRouter(state.actorSystem, false);
+        }
+
+        countDownLatch = new CountDownLatch(expectedDeliveries());
+        for (long m = 0; m < messageCount; m++) {
+            fastActorRouter.tell(fastActorMessage(m));
+        }
+
+        countDownLatch.await();
+    }
+
+    @Benchmark
+    public void fastActorCallerThread(FastActorSystemState state) throws InterruptedException {
+        if (fastActorCallerThreadRouter == null) {
+            fastActorCallerThreadRouter = createFastActorRouter(state.actorSystem, true);
+        }
+
+        countDownLatch = new CountDownLatch(expectedDeliveries());
+        for (long m = 0; m < messageCount; m++) {
+            fastActorCallerThreadRouter.tell(fastActorMessage(m));
+        }
+
+        countDownLatch.await();
+    }
+
+    @Benchmark
+    public void akka(AkkaSystemState state) throws InterruptedException, ExecutionException {
+        if (akkaRouter == null) {
+            akkaRouter = createAkkaRouter(state);
+        }
+
+        countDownLatch = new CountDownLatch(expectedDeliveries());
+        for (long m = 0; m < messageCount; m++) {
+            akkaRouter.tell(m);
+        }
+
+        countDownLatch.await();
+    }
+}
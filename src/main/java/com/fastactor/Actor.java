@@ -17,11 +17,20 @@ package com.fastactor;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Queue;
-import java.util.concurrent.ForkJoinTask;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Supplier;
 
+import org.jctools.queues.MpmcArrayQueue;
+import org.jctools.queues.MpscArrayQueue;
+import org.jctools.queues.MpscChunkedArrayQueue;
 import org.jctools.queues.MpscLinkedQueue;
 
 /**
@@ -31,6 +40,7 @@ import org.jctools.queues.MpscLinkedQueue;
  * An actor has a well-defined life-cycle.
  * - ''RUNNING'' (created and started actor) - can receive messages
  * - ''NON-RUNNING'' (before it's assigned to an actor system) - can't do anything
+ * - ''STOPPED'' (after {@link #stop(ActorRef)}) - messages sent to it are {@link DeadLetter}s
  * <p>
  * The Actor's own {@link ActorRef} is available as {@link #getSelf()}.
  * The only abstract method is {@link #onMessage(MessageType message)} which shall implement message processing.
@@ -38,13 +48,44 @@ import org.jctools.queues.MpscLinkedQueue;
  * @param <MessageType> base type of actor messages
  */
 public abstract class Actor<MessageType> {
-    private final OnMessageRun onMessageRun;
-    private final ActorRef<MessageType> actorRef;
+    private static final int MAILBOX_CHUNK_SIZE = 1024;
+    private static final long MIN_BLOCKING_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+    private static final long MAX_BLOCKING_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final VarHandle METRICS;
+    private static final VarHandle SYSTEM_MAILBOX;
+    private static final VarHandle MAILBOX;
+    private static final VarHandle SCHEDULED;
+    private static final Object STOP = new Object();
     private static final Logger logger = LogManager.getLogger(Actor.class);
+    // an idle actor is this object and its ActorRef, which is also its task and its routee,
+    // the mailbox is created by the first message and the generated name by the first getName()
+    private final ActorRefImpl actorRef;
     private ActorSystem actorSystem;
+    private Dispatcher dispatcher;
+    private ActorRegistry.Registration registration;
     private String name;
-    private Queue<MessageType> mailbox;
-    private final AtomicBoolean scheduled;
+    private Supplier<Queue<MessageType>> queueFactory;
+    private volatile Queue<MessageType> mailbox;
+    private boolean sharedMailbox;
+    private volatile boolean scheduled;
+    private final OverflowStrategy overflowStrategy;
+    private int throughput;
+    private volatile ActorMetrics metrics;
+    private Map<Object, Cancellable> timers;
+    private volatile Queue<Object> systemMailbox;
+    private volatile boolean stopped;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            METRICS = lookup.findVarHandle(Actor.class, "metrics", ActorMetrics.class);
+            SYSTEM_MAILBOX = lookup.findVarHandle(Actor.class, "systemMailbox", Queue.class);
+            MAILBOX = lookup.findVarHandle(Actor.class, "mailbox", Queue.class);
+            SCHEDULED = lookup.findVarHandle(Actor.class, "scheduled", boolean.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
 
     /**
      * To be implemented by concrete Actor, this defines the behavior of the
@@ -68,15 +109,39 @@ public abstract class Actor<MessageType> {
      * @param queueFactory factory for mailbox creation
      */
     public Actor(String name, Supplier<Queue<MessageType>> queueFactory) {
-        mailbox = queueFactory.get();
-        onMessageRun = new OnMessageRun();
-        actorRef = new ActorRefImpl();
-        if (name == null) {
-            this.name = getDefaultUniqueActorName();
-        } else {
-            this.name = name;
+        this(name, queueFactory, OverflowStrategy.DROP_NEWEST);
+    }
+
+    /**
+     * Init a new Actor with the specific name and bounded mailbox. The mailbox is
+     * {@link org.jctools.queues.MpscArrayQueue}, {@link org.jctools.queues.MpscChunkedArrayQueue} for big capacities
+     * (memory is allocated when it's needed) or {@link org.jctools.queues.MpmcArrayQueue}
+     * for {@link OverflowStrategy#DROP_OLDEST}.
+     *
+     * @param name             name of the new actor
+     * @param mailboxCapacity  maximum number of waiting messages, it is rounded up to the next power of two
+     * @param overflowStrategy what happens with messages which don't fit into the mailbox
+     */
+    public Actor(String name, int mailboxCapacity, OverflowStrategy overflowStrategy) {
+        this(name, boundedMailboxFactory(mailboxCapacity, overflowStrategy), overflowStrategy);
+    }
+
+    /**
+     * Init a new Actor with the specific name and bounded mailbox queue
+     *
+     * @param name             name of the new actor
+     * @param queueFactory     factory for mailbox creation
+     * @param overflowStrategy what happens with messages which are not accepted by the mailbox
+     */
+    public Actor(String name, Supplier<Queue<MessageType>> queueFactory, OverflowStrategy overflowStrategy) {
+        if (overflowStrategy == null) {
+            throw new IllegalArgumentException("Overflow strategy must be defined");
         }
-        this.scheduled = new AtomicBoolean(false);
+
+        this.overflowStrategy = overflowStrategy;
+        this.queueFactory = queueFactory;
+        this.actorRef = createActorRef();
+        this.name = name;
     }
 
     /**
@@ -92,9 +157,54 @@ public abstract class Actor<MessageType> {
      * @return name of actor
      */
     public String getName() {
+        String name = this.name;
+        if (name == null) {
+            // racing threads generate the same name
+            name = getDefaultUniqueActorName();
+            this.name = name;
+        }
         return name;
     }
 
+    /**
+     * Overrides throughput of the actor system for this actor. Throughput is the maximum number of messages
+     * processed in one run, after that the actor is scheduled again and the thread can be used by other actors.
+     * Lower value improves fairness and latency of other actors, higher value improves throughput of this actor.
+     * <p>
+     * It can be called by constructor or by the actor itself (e.g. in {@link #onMessage(Object)}).
+     * Fairness of scheduling depends on the thread pool mode, see {@link ActorSystem#ActorSystem(int, int)}.
+     *
+     * @param throughput number of messages processed in one run, {@link ActorSystem#UNLIMITED_THROUGHPUT}
+     *                   for draining the whole mailbox
+     */
+    protected final void setThroughput(int throughput) {
+        if (throughput <= 0) {
+            throw new IllegalArgumentException("Throughput must be positive, but it is " + throughput);
+        }
+        this.throughput = throughput;
+    }
+
+    /**
+     * Runtime metrics of this actor. They are recorded only while metrics of its actor system are enabled,
+     * see {@link ActorSystemMetrics#setEnabled(boolean)}.
+     * <p>
+     * This method is thread-safe.
+     *
+     * @return metrics of this actor
+     */
+    public final ActorMetrics getMetrics() {
+        ActorMetrics actorMetrics = metrics;
+        if (actorMetrics == null) {
+            if (actorSystem == null) {
+                throw new IllegalStateException("Metrics are not available until" +
+                        " this actor is assigned to an Actor System");
+            }
+            METRICS.compareAndSet(this, null, new ActorMetrics(this, actorSystem.getMetrics()));
+            actorMetrics = metrics;
+        }
+        return actorMetrics;
+    }
+
     /**
      * User overridable callback.
      * <p>
@@ -105,6 +215,16 @@ public abstract class Actor<MessageType> {
     protected void preStart() {
     }
 
+    /**
+     * User overridable callback.
+     * <p>
+     * Is called when an Actor is stopped, after the last processed message. Messages which are still waiting
+     * in the mailbox become dead letters after this call, timers of the actor are already cancelled.
+     * Empty default implementation.
+     */
+    protected void postStop() {
+    }
+
     /**
      * The ActorRef representing this actor
      * <p>
@@ -134,6 +254,137 @@ public abstract class Actor<MessageType> {
         }
     }
 
+    /**
+     * Assigns actor to the same actor system, the actor is run by the specific dispatcher.
+     * <p>
+     * This method is thread-safe and can be called from other threads than the ordinary
+     * actor message processing thread,.
+     *
+     * @param actor      actor which is assigned
+     * @param dispatcher dispatcher which runs the assigned actor
+     * @param <T>        base type of actor messages which is assigned
+     * @return {@link ActorRef} of assigned actor
+     */
+    protected final <T> ActorRef<T> actorOf(Actor<T> actor, Dispatcher dispatcher) {
+        try {
+            return this.actorSystem.actorOf(actor, dispatcher);
+        } catch (NullPointerException e) {
+            throw new IllegalStateException("Method actorOf(Actor, Dispatcher) cannot be called until" +
+                    " this actor is assigned to an Actor System. It can be called for example in preStart() method", e);
+        }
+    }
+
+    /**
+     * Starts a named timer which sends the message to this actor once after the delay.
+     * A timer with the same key is cancelled, so the key can be used e.g. for a resettable idle timeout.
+     * A message which was already sent by the previous timer stays in the mailbox.
+     * <p>
+     * Timers are not thread-safe, they should be used only by the actor itself (e.g. in {@link #onMessage(Object)}).
+     *
+     * @param key     name of the timer
+     * @param message message which is sent
+     * @param delay   delay of the message
+     * @param unit    unit for delay
+     */
+    protected final void startSingleTimer(Object key, MessageType message, long delay, TimeUnit unit) {
+        replaceTimer(key, getActorSystem("startSingleTimer").scheduleOnce(delay, unit, actorRef, message));
+    }
+
+    /**
+     * Starts a named timer which sends the message to this actor periodically, see
+     * {@link ActorSystem#scheduleAtFixedRate}. A timer with the same key is cancelled.
+     * <p>
+     * Timers are not thread-safe, they should be used only by the actor itself (e.g. in {@link #onMessage(Object)}).
+     *
+     * @param key          name of the timer
+     * @param message      message which is sent
+     * @param initialDelay delay of the first message
+     * @param period       period between messages
+     * @param unit         unit for initialDelay and period
+     */
+    protected final void startTimerAtFixedRate(Object key, MessageType message, long initialDelay, long period,
+                                               TimeUnit unit) {
+        replaceTimer(key, getActorSystem("startTimerAtFixedRate")
+                .scheduleAtFixedRate(initialDelay, period, unit, actorRef, message));
+    }
+
+    /**
+     * Cancels the named timer, nothing happens if there is no such timer.
+     *
+     * @param key name of the timer
+     */
+    protected final void cancelTimer(Object key) {
+        if (timers != null) {
+            Cancellable timer = timers.remove(key);
+            if (timer != null) {
+                timer.cancel();
+            }
+        }
+    }
+
+    /**
+     * @param key name of the timer
+     * @return true if the named timer is started and its message wasn't sent yet (periodic ones until cancelled)
+     */
+    protected final boolean isTimerActive(Object key) {
+        if (timers == null) {
+            return false;
+        }
+        Cancellable timer = timers.get(key);
+        return timer != null && timer.isPending();
+    }
+
+    private void replaceTimer(Object key, Cancellable timer) {
+        if (timers == null) {
+            timers = new HashMap<>();
+        }
+        Cancellable previous = timers.put(key, timer);
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    private ActorSystem getActorSystem(String method) {
+        if (actorSystem == null) {
+            throw new IllegalStateException("Method " + method + " cannot be called until" +
+                    " this actor is assigned to an Actor System. It can be called for example in preStart() method");
+        }
+        return actorSystem;
+    }
+
+    /**
+     * Stops an actor of the same actor system, e.g. {@code stop(getSelf())}. See {@link ActorSystem#stop(ActorRef)}.
+     * <p>
+     * This method is thread-safe and can be called from other threads than the ordinary
+     * actor message processing thread.
+     *
+     * @param actorRef actor which is stopped
+     */
+    protected final void stop(ActorRef<?> actorRef) {
+        getActorSystem("stop").stop(actorRef);
+    }
+
+    /**
+     * Checks the capacity at once, although the mailbox is created by the first message.
+     */
+    private static <T> Supplier<Queue<T>> boundedMailboxFactory(int capacity, OverflowStrategy overflowStrategy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Mailbox capacity must be positive, but it is " + capacity);
+        }
+        return () -> createBoundedMailbox(capacity, overflowStrategy);
+    }
+
+    private static <T> Queue<T> createBoundedMailbox(int capacity, OverflowStrategy overflowStrategy) {
+        capacity = Math.max(capacity, 2);
+        if (overflowStrategy == OverflowStrategy.DROP_OLDEST) {
+            return new MpmcArrayQueue<>(capacity);
+        } else if (capacity > MAILBOX_CHUNK_SIZE) {
+            return new MpscChunkedArrayQueue<>(MAILBOX_CHUNK_SIZE, capacity);
+        } else {
+            return new MpscArrayQueue<>(capacity);
+        }
+    }
+
     static String generateUniqueString(Object input) {
         return Integer.toHexString(System.identityHashCode(input));
     }
@@ -142,8 +393,46 @@ public abstract class Actor<MessageType> {
         return this.getClass().getSimpleName() + "<" + generateUniqueString(this) + ">";
     }
 
-    void setActorSystem(ActorSystem actorSystem) {
+    void setActorSystem(ActorSystem actorSystem, Dispatcher dispatcher) {
         this.actorSystem = actorSystem;
+        this.dispatcher = dispatcher;
+        this.registration = actorSystem.addActor(this);
+    }
+
+    /**
+     * Removes the actor from its system, it's called when the actor stops or when it was never started.
+     */
+    void unregister() {
+        actorSystem.removeActor(registration);
+    }
+
+    /**
+     * @return actor of the ActorRef, null if the ActorRef doesn't belong to an actor (e.g. reply of ask)
+     */
+    static Actor<?> getActor(ActorRef<?> actorRef) {
+        return actorRef instanceof Actor.ActorRefImpl ? ((Actor<?>.ActorRefImpl) actorRef).getActor()
+                : Router.getInternalRouter(actorRef);
+    }
+
+    /**
+     * The actor stops after the message which is being processed, asynchronously.
+     */
+    void requestStop() {
+        if (!stopped) {
+            offerSystemMessage(STOP);
+            scheduleIfNeeded();
+        }
+    }
+
+    /**
+     * Processing of the mailbox is interrupted when this method returns true,
+     * so that control messages and stop are processed first.
+     *
+     * @return true if there are control messages waiting
+     */
+    boolean hasSystemMessages() {
+        final Queue<Object> queue = systemMailbox;
+        return queue != null && !queue.isEmpty();
     }
 
     ActorRef<MessageType> getActorRef() {
@@ -151,79 +440,550 @@ public abstract class Actor<MessageType> {
     }
 
     Routee<MessageType> getRoutee() {
-        return new RouteeImpl();
+        return actorRef;
     }
 
     Runnable getPreStartRunnable() {
         return new PreStartRun();
     }
 
+    Queue<MessageType> getMailbox() {
+        final Queue<MessageType> mailbox = this.mailbox;
+        return mailbox != null ? mailbox : createMailbox();
+    }
+
+    /**
+     * @return size of the mailbox, 0 if it isn't created yet
+     */
+    int getMailboxSize() {
+        final Queue<MessageType> mailbox = this.mailbox;
+        return mailbox != null ? mailbox.size() : 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Queue<MessageType> createMailbox() {
+        final Queue<MessageType> created = queueFactory.get();
+        return MAILBOX.compareAndSet(this, null, created) ? created : (Queue<MessageType>) MAILBOX.getVolatile(this);
+    }
+
+    /**
+     * Makes size of the mailbox O(1), it must be called before the actor is assigned to an actor system.
+     * The mailbox is still created by the first message.
+     */
+    void trackMailboxSize() {
+        final Queue<MessageType> mailbox = this.mailbox;
+        if (mailbox != null) {
+            this.mailbox = trackSize(mailbox);
+        } else {
+            final Supplier<Queue<MessageType>> factory = queueFactory;
+            queueFactory = () -> trackSize(factory.get());
+        }
+    }
+
+    private static <T> Queue<T> trackSize(Queue<T> mailbox) {
+        if (mailbox instanceof SizeTrackingMailbox || mailbox instanceof PrimitiveRingMailbox) {
+            return mailbox;
+        }
+        return new SizeTrackingMailbox<>(mailbox);
+    }
+
+    /**
+     * Replaces the mailbox by a mailbox which is consumed also by other actors, it must be called before the actor
+     * is assigned to an actor system. Messages of the shared mailbox are not discarded when the actor stops.
+     */
+    void shareMailbox(Queue<MessageType> mailbox) {
+        this.mailbox = mailbox;
+        this.sharedMailbox = true;
+    }
+
+    /**
+     * Processes messages waiting in the mailbox. It is called by the actor system, never concurrently.
+     *
+     * @param limit   maximum number of processed messages
+     * @param metrics metrics of the actor, null if metrics are disabled
+     * @return number of processed messages
+     */
+    int processMessages(int limit, ActorMetrics metrics) {
+        final Queue<MessageType> mailbox = getMailbox();
+        int processed = 0;
+        MessageType message;
+        while (processed < limit && !hasSystemMessages() && (message = mailbox.poll()) != null) {
+            processed++;
+            processMessage(message, metrics);
+        }
+        return processed;
+    }
+
+    private void processMessage(MessageType message, ActorMetrics metrics) {
+        final PooledMessage pooled = message instanceof PooledMessage ? (PooledMessage) message : null;
+        final int stamp = pooled != null ? pooled.received() : 0;
+        if (metrics == null) {
+            onMessage(message);
+        } else {
+            long start = System.nanoTime();
+            try {
+                onMessage(message);
+            } finally {
+                metrics.recordProcessed(1, System.nanoTime() - start);
+            }
+        }
+        if (pooled != null) {
+            pooled.recycleIfOwned(stamp);
+        }
+    }
+
+    /**
+     * The receiver becomes the owner of a pooled message.
+     */
+    private static void transferOwnership(Object message) {
+        if (message instanceof PooledMessage) {
+            ((PooledMessage) message).sent();
+        }
+    }
+
+    /**
+     * Processes control messages, it stops the actor when stop was requested.
+     *
+     * @return number of processed control messages
+     */
+    @SuppressWarnings("unchecked")
+    private int processSystemMessages(ActorMetrics metrics) {
+        final Queue<Object> queue = systemMailbox;
+        if (queue == null) {
+            return 0;
+        }
+        int processed = 0;
+        Object message;
+        while (!stopped && (message = queue.poll()) != null) {
+            if (message == STOP) {
+                stopNow();
+            } else if (message instanceof SystemTask) {
+                ((SystemTask) message).run();
+            } else {
+                processed++;
+                processMessage((MessageType) message, metrics);
+            }
+        }
+        return processed;
+    }
+
+    /**
+     * Runs the task in the actor, before messages waiting in the mailbox. The task is dropped if the actor stops.
+     */
+    void tellSystemTask(SystemTask task) {
+        if (!stopped) {
+            offerSystemMessage(task);
+            scheduleIfNeeded();
+        }
+    }
+
+    /**
+     * Handles a message which was sent to the stopped actor.
+     */
+    void deadLetter(Object message) {
+        actorSystem.deadLetter(message, actorRef);
+    }
+
+    /**
+     * Is called before {@link #preStart()}, in the same run. The actor isn't started if it stops itself here.
+     */
+    void beforePreStart() {
+    }
+
+    private void offerSystemMessage(Object message) {
+        Queue<Object> queue = systemMailbox;
+        if (queue == null) {
+            // most actors never receive a control message, so the queue is created on demand
+            SYSTEM_MAILBOX.compareAndSet(this, null, new MpscLinkedQueue<>());
+            queue = systemMailbox;
+        }
+        queue.offer(message);
+    }
+
+    private ActorMetrics getMetricsIfEnabled() {
+        return actorSystem.getMetrics().isEnabled() ? getMetrics() : null;
+    }
+
+    private void recordEnqueued(int count) {
+        if (count > 0 && actorSystem.getMetrics().isEnabled()) {
+            getMetrics().recordEnqueued(count);
+        }
+    }
+
     void markAsScheduled() {
-        scheduled.set(true);
+        scheduled = true;
+    }
+
+    /**
+     * Is called by the constructor, primitive actors return a reference with primitive tell.
+     */
+    ActorRefImpl createActorRef() {
+        return new ActorRefImpl();
     }
 
-    private class ActorRefImpl implements ActorRef<MessageType> {
+    /**
+     * Fast path of primitive tell, see {@link PrimitiveRingMailbox}. When the message isn't enqueued at once
+     * (a stopped actor, a full or replaced mailbox), the caller sends it boxed by the generic tell.
+     *
+     * @param bits 64 bits of the message
+     * @return true if the message was enqueued
+     */
+    boolean offerBits(long bits) {
+        if (stopped) {
+            return false;
+        }
+        // the first message creates the mailbox, so it isn't boxed either
+        final Queue<MessageType> mailbox = getMailbox();
+        if (!(mailbox instanceof PrimitiveRingMailbox)
+                || !((PrimitiveRingMailbox<?>) mailbox).offerBits(bits)) {
+            return false;
+        }
+        recordEnqueued(1);
+        scheduleIfNeeded();
+        return true;
+    }
+
+    /**
+     * The ActorRef of the actor, it's also the task which processes messages and the routee of the actor,
+     * so these roles don't cost an object per actor.
+     */
+    class ActorRefImpl implements ActorRef<MessageType>, Routee<MessageType>, Runnable {
 
         @Override
         public void tell(MessageType message) {
-            mailbox.offer(message);
+            transferOwnership(message);
+            if (stopped) {
+                deadLetter(message);
+                return;
+            }
+            if (message instanceof ControlMessage) {
+                offerSystemMessage(message);
+                recordEnqueued(1);
+            } else if (getMailbox().offer(message) || offerToFullMailbox(message)) {
+                recordEnqueued(1);
+            }
+            scheduleIfNeeded();
+        }
+
+        @Override
+        public void tellAll(Collection<? extends MessageType> messages) {
+            if (stopped) {
+                for (MessageType message : messages) {
+                    deadLetter(message);
+                }
+                return;
+            }
+            final Queue<MessageType> mailbox = getMailbox();
+            int enqueued = 0;
+            try {
+                for (MessageType message : messages) {
+                    transferOwnership(message);
+                    if (message instanceof ControlMessage) {
+                        offerSystemMessage(message);
+                        enqueued++;
+                    } else if (mailbox.offer(message) || offerToFullMailbox(message)) {
+                        enqueued++;
+                    }
+                }
+            } finally {
+                recordEnqueued(enqueued);
+                scheduleIfNeeded();
+            }
+        }
+
+        @Override
+        public void tellAll(MessageType[] messages) {
+            if (stopped) {
+                for (MessageType message : messages) {
+                    deadLetter(message);
+                }
+                return;
+            }
+            final Queue<MessageType> mailbox = getMailbox();
+            int enqueued = 0;
+            try {
+                for (MessageType message : messages) {
+                    transferOwnership(message);
+                    if (message instanceof ControlMessage) {
+                        offerSystemMessage(message);
+                        enqueued++;
+                    } else if (mailbox.offer(message) || offerToFullMailbox(message)) {
+                        enqueued++;
+                    }
+                }
+            } finally {
+                recordEnqueued(enqueued);
+                scheduleIfNeeded();
+            }
+        }
+
+        @Override
+        public boolean tryTell(MessageType message) {
+            transferOwnership(message);
+            if (stopped) {
+                deadLetter(message);
+                return false;
+            }
+            boolean enqueued;
+            if (message instanceof ControlMessage) {
+                offerSystemMessage(message);
+                enqueued = true;
+            } else {
+                enqueued = getMailbox().offer(message);
+            }
+            if (!enqueued && overflowStrategy == OverflowStrategy.DROP_OLDEST) {
+                offerDroppingOldest(message);
+                enqueued = true;
+            }
+            if (enqueued) {
+                recordEnqueued(1);
+            }
             scheduleIfNeeded();
+            return enqueued;
         }
 
         @Override
         public int hashCode() {
             return getName().hashCode();
         }
-    }
 
-    private class RouteeImpl implements Routee<MessageType> {
+        @Override
+        public String toString() {
+            return "ActorRef(" + getName() + ")";
+        }
 
         @Override
         public int getMailboxSize() {
-            return mailbox.size();
+            return Actor.this.getMailboxSize();
+        }
+
+        @Override
+        public boolean isIdle() {
+            return !scheduled;
         }
 
         @Override
         public ActorRef<MessageType> getActorRef() {
-            return Actor.this.getActorRef();
+            return this;
+        }
+
+        /**
+         * Processes messages, it's dispatched when the actor is scheduled.
+         */
+        @Override
+        public void run() {
+            Actor.this.run();
+        }
+
+        private Actor<MessageType> getActor() {
+            return Actor.this;
+        }
+    }
+
+    /**
+     * @return true if the message was enqueued
+     */
+    private boolean offerToFullMailbox(MessageType message) {
+        switch (overflowStrategy) {
+            case DROP_OLDEST:
+                offerDroppingOldest(message);
+                return true;
+            case BLOCK:
+                if (dispatcher.isDispatcherThread()) {
+                    // waiting on a thread of the actor system could deadlock it
+                    throw newMailboxFullException();
+                }
+                offerBlocking(message);
+                return true;
+            case FAIL:
+                throw newMailboxFullException();
+            case DROP_NEWEST:
+            default:
+                logger.debug("Mailbox of Actor '{}' is full, message is dropped", getName());
+                return false;
+        }
+    }
+
+    private IllegalStateException newMailboxFullException() {
+        return new IllegalStateException("Mailbox of Actor '" + getName() + "' is full");
+    }
+
+    private void offerDroppingOldest(MessageType message) {
+        final Queue<MessageType> mailbox = getMailbox();
+        while (!mailbox.offer(message)) {
+            if (mailbox.poll() != null) {
+                logger.debug("Mailbox of Actor '{}' is full, the oldest message is dropped", getName());
+            }
+        }
+    }
+
+    private void offerBlocking(MessageType message) {
+        // messages enqueued by tellAll before the mailbox got full must be processed
+        scheduleIfNeeded();
+        final Queue<MessageType> mailbox = getMailbox();
+        long parkNanos = MIN_BLOCKING_PARK_NANOS;
+        while (!mailbox.offer(message)) {
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for free space in mailbox of Actor '"
+                        + getName() + "'");
+            }
+            LockSupport.parkNanos(this, parkNanos);
+            parkNanos = Math.min(parkNanos << 1, MAX_BLOCKING_PARK_NANOS);
         }
     }
 
     private void scheduleIfNeeded() {
-        if (!scheduled.get() && !mailbox.isEmpty() && !scheduled.getAndSet(true)) {
-            if (ForkJoinTask.inForkJoinPool() && (ForkJoinTask.getPool() == actorSystem.getUserThreadPool())) {
-                ForkJoinTask.adapt(onMessageRun).fork();
-            } else {
-                actorSystem.getUserThreadPool().execute(onMessageRun);
+        if (!scheduled && hasWork() && !(boolean) SCHEDULED.getAndSet(this, true)) {
+            try {
+                dispatcher.dispatch(this, actorRef);
+            } catch (RejectedExecutionException e) {
+                dispatchRejected();
             }
         }
     }
 
-    private class OnMessageRun implements Runnable {
-        @Override
-        public void run() {
+    /**
+     * The dispatcher is shut down, so the actor can't run anymore. It's stopped without postStop, which would
+     * have to run on the dispatcher, and its messages are sent to dead letters.
+     */
+    private void dispatchRejected() {
+        if (!stopped) {
+            logger.warn("Dispatcher of Actor '{}' is shut down, the actor is stopped", getName());
+            stopped = true;
+            unregister();
+        }
+        discardMessages();
+        scheduled = false;
+        // a message enqueued by a sender which didn't see the stopped flag is discarded by the next attempt
+        scheduleIfNeeded();
+    }
+
+    boolean hasWork() {
+        final Queue<MessageType> mailbox = this.mailbox;
+        return (mailbox != null && !mailbox.isEmpty()) || hasSystemMessages();
+    }
+
+    /**
+     * Called by the run of the actor, so it's never concurrent with processing of messages.
+     */
+    void stopNow() {
+        stopped = true;
+        if (timers != null) {
+            for (Cancellable timer : timers.values()) {
+                timer.cancel();
+            }
+            timers = null;
+        }
+        try {
+            postStop();
+        } catch (Throwable e) {
+            ActorMetrics actorMetrics = getMetricsIfEnabled();
+            if (actorMetrics != null) {
+                actorMetrics.recordException();
+            }
+            logger.error("Unexpected exception from Actor '{}': ", getName(), e);
+        }
+        unregister();
+    }
+
+    /**
+     * Messages of a stopped actor are dead letters, including messages enqueued by senders
+     * which didn't see the stopped flag yet.
+     */
+    private void discardMessages() {
+        final Queue<MessageType> mailbox = this.mailbox;
+        MessageType message;
+        while (!sharedMailbox && mailbox != null && (message = mailbox.poll()) != null) {
+            deadLetter(message);
+        }
+        final Queue<Object> queue = systemMailbox;
+        Object systemMessage;
+        while (queue != null && (systemMessage = queue.poll()) != null) {
+            if (systemMessage != STOP && !(systemMessage instanceof SystemTask)) {
+                deadLetter(systemMessage);
+            }
+        }
+    }
+
+    /**
+     * One run of the actor on a thread of its dispatcher.
+     */
+    private void run() {
+        final int limit = throughput != 0 ? throughput : actorSystem.getThroughput();
+        final ActorMetrics runMetrics = getMetricsIfEnabled();
+        boolean yielded = false;
+        try {
+            if (!stopped) {
+                int processed = processSystemMessages(runMetrics);
+                if (!stopped) {
+                    final int processedMessages = processMessages(limit, runMetrics);
+                    yielded = processedMessages >= limit;
+                    processed += processedMessages;
+                    // control messages which interrupted processing of the mailbox
+                    processed += processSystemMessages(runMetrics);
+                }
+                if (runMetrics != null) {
+                    runMetrics.recordRun(processed);
+                }
+            }
+        } catch (Throwable e) {
+            if (runMetrics != null) {
+                runMetrics.recordFailedRun();
+            }
+            logger.error("Unexpected exception from Actor '{}': ", getName(), e);
+        } finally {
             try {
-                for (MessageType message = mailbox.poll(); message != null; message = mailbox.poll()) {
-                    onMessage(message);
+                if (stopped) {
+                    discardMessages();
                 }
-            } catch (Throwable e) {
-                logger.error("Unexpected exception from Actor '{}': ", getName(), e);
             } finally {
-                scheduled.set(false);
-                scheduleIfNeeded();
+                scheduled = false;
+                if (yielded) {
+                    scheduleAfterYield();
+                } else {
+                    scheduleIfNeeded();
+                }
             }
         }
     }
 
+    /**
+     * The actor reached its throughput, so it goes behind actors waiting for the thread.
+     */
+    private void scheduleAfterYield() {
+        if (!scheduled && hasWork() && !(boolean) SCHEDULED.getAndSet(this, true)) {
+            try {
+                dispatcher.redispatch(this, actorRef);
+            } catch (RejectedExecutionException e) {
+                dispatchRejected();
+            }
+        }
+    }
+
+    /**
+     * Internal task which is sent through the control queue and run by the actor, it's never a dead letter.
+     */
+    interface SystemTask {
+        void run();
+    }
+
     private class PreStartRun implements Runnable {
         @Override
         public void run() {
             try {
-                preStart();
+                beforePreStart();
+                if (!stopped) {
+                    preStart();
+                }
             } catch (Throwable e) {
+                ActorMetrics actorMetrics = getMetricsIfEnabled();
+                if (actorMetrics != null) {
+                    actorMetrics.recordException();
+                }
                 logger.error("Unexpected exception from Actor '{}': ", getName(), e);
             } finally {
-                scheduled.set(false);
+                scheduled = false;
                 scheduleIfNeeded();
             }
         }
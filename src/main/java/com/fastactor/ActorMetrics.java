@@ -0,0 +1,116 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runtime metrics of one actor, they are recorded only while metrics of its actor system are enabled,
+ * see {@link ActorSystemMetrics#setEnabled(boolean)}.
+ * <p>
+ * Only enqueued messages are counted by senders, everything else is recorded by the actor itself,
+ * so it doesn't need atomic updates.
+ */
+public final class ActorMetrics implements ActorMetricsMXBean {
+    private static final int PROCESSED = 0;
+    private static final int RUNS = 1;
+    private static final int EXCEPTIONS = 2;
+
+    private final Actor<?> actor;
+    private final ActorSystemMetrics systemMetrics;
+    private final LongAdder enqueued = new LongAdder();
+    private final AtomicLongArray counters = new AtomicLongArray(3);
+    private final Histogram batchSizes = new Histogram.SingleWriter();
+    private final Histogram processingTimes = new Histogram.SingleWriter();
+
+    ActorMetrics(Actor<?> actor, ActorSystemMetrics systemMetrics) {
+        this.actor = actor;
+        this.systemMetrics = systemMetrics;
+    }
+
+    @Override
+    public String getName() {
+        return actor.getName();
+    }
+
+    @Override
+    public long getMessagesEnqueued() {
+        return enqueued.sum();
+    }
+
+    @Override
+    public long getMessagesProcessed() {
+        return counters.get(PROCESSED);
+    }
+
+    /**
+     * Size of mailbox, it's linear time operation for linked queues like {@link org.jctools.queues.MpscLinkedQueue}.
+     */
+    @Override
+    public long getMailboxDepth() {
+        return actor.getMailboxSize();
+    }
+
+    @Override
+    public long getScheduledRuns() {
+        return counters.get(RUNS);
+    }
+
+    @Override
+    public long getExceptions() {
+        return counters.get(EXCEPTIONS);
+    }
+
+    @Override
+    public Histogram getBatchSizes() {
+        return batchSizes;
+    }
+
+    @Override
+    public Histogram getProcessingTimes() {
+        return processingTimes;
+    }
+
+    void recordEnqueued(int count) {
+        enqueued.add(count);
+        systemMetrics.recordEnqueued(count);
+    }
+
+    void recordProcessed(int count, long nanos) {
+        counters.lazySet(PROCESSED, counters.get(PROCESSED) + count);
+        processingTimes.record(nanos);
+        systemMetrics.recordProcessed(count, nanos);
+    }
+
+    void recordRun(int processed) {
+        counters.lazySet(RUNS, counters.get(RUNS) + 1);
+        batchSizes.record(processed);
+        systemMetrics.recordRun(processed);
+    }
+
+    void recordException() {
+        counters.lazySet(EXCEPTIONS, counters.get(EXCEPTIONS) + 1);
+        systemMetrics.recordException();
+    }
+
+    /**
+     * Run interrupted by an exception, so number of processed messages is unknown.
+     */
+    void recordFailedRun() {
+        counters.lazySet(RUNS, counters.get(RUNS) + 1);
+        counters.lazySet(EXCEPTIONS, counters.get(EXCEPTIONS) + 1);
+        systemMetrics.recordFailedRun();
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+/**
+ * Runtime metrics of one actor exported via JMX, see {@link ActorSystem#registerMBean(Actor)}.
+ * Metrics are recorded only while they are enabled in the actor system.
+ */
+public interface ActorMetricsMXBean {
+
+    /**
+     * @return name of the actor
+     */
+    String getName();
+
+    /**
+     * @return number of messages accepted by the mailbox
+     */
+    long getMessagesEnqueued();
+
+    /**
+     * @return number of messages passed to the actor
+     */
+    long getMessagesProcessed();
+
+    /**
+     * @return number of messages waiting in the mailbox
+     */
+    long getMailboxDepth();
+
+    /**
+     * @return how many times the actor was scheduled to process its mailbox
+     */
+    long getScheduledRuns();
+
+    /**
+     * @return number of exceptions thrown by the actor
+     */
+    long getExceptions();
+
+    /**
+     * @return numbers of messages processed in one run, runs interrupted by an exception are not included
+     */
+    Histogram getBatchSizes();
+
+    /**
+     * @return durations of message processing (one call of {@code onMessage} or {@code onMessages}) in nanoseconds
+     */
+    Histogram getProcessingTimes();
+}
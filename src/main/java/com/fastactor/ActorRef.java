@@ -14,6 +14,11 @@
 
 package com.fastactor;
 
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
 /**
  * Immutable handle to an actor. An ActorRef
  * can be obtained from an {@link com.fastactor.ActorSystem}. This means
@@ -28,8 +33,72 @@ public interface ActorRef<MessageType> {
 
     /**
      * Sends the specified message to this ActorRef, i.e. fire-and-forget semantics.
+     * When the mailbox of a target actor is bounded and full, it is handled according to its {@link OverflowStrategy}.
      *
      * @param message message which is sent
      */
     void tell(MessageType message);
+
+    /**
+     * Sends the specified message to this ActorRef only if there is free space in the mailbox.
+     * It never blocks and never throws because of full mailbox.
+     *
+     * @param message message which is sent
+     * @return true if the message was enqueued
+     */
+    default boolean tryTell(MessageType message) {
+        tell(message);
+        return true;
+    }
+
+    /**
+     * Sends all messages to this ActorRef in the given order, i.e. fire-and-forget semantics.
+     * It is more efficient than sending the messages one by one because the target actor is scheduled at most once.
+     *
+     * @param messages messages which are sent
+     */
+    default void tellAll(Collection<? extends MessageType> messages) {
+        for (MessageType message : messages) {
+            tell(message);
+        }
+    }
+
+    /**
+     * Sends all messages to this ActorRef in the given order, i.e. fire-and-forget semantics.
+     * It is more efficient than sending the messages one by one because the target actor is scheduled at most once.
+     *
+     * @param messages messages which are sent
+     */
+    default void tellAll(MessageType[] messages) {
+        for (MessageType message : messages) {
+            tell(message);
+        }
+    }
+
+    /**
+     * Sends a message created for a temporary reply ActorRef and returns the future of the reply, i.e. request-response
+     * semantics. The reply ActorRef is not an actor, the first message sent to it completes the future.
+     * No thread is blocked while waiting on the reply.
+     * <p>
+     * The future completes exceptionally with {@link java.util.concurrent.TimeoutException} when there is no reply
+     * in the timeout, or with the exception thrown when the message is sent (e.g. a full bounded mailbox).
+     * The timeout is measured by a timer with resolution of 10 ms.
+     *
+     * @param messageFactory creates the message from the reply ActorRef
+     * @param timeout        max time of waiting on the reply
+     * @param unit           unit for timeout
+     * @param <ReplyType>    type of the reply
+     * @return future of the reply
+     */
+    default <ReplyType> CompletableFuture<ReplyType> ask(Function<ActorRef<ReplyType>, ? extends MessageType> messageFactory,
+                                                         long timeout, TimeUnit unit) {
+        final AskReplyRef<ReplyType> replyTo = new AskReplyRef<>();
+        replyTo.scheduleTimeout(timeout, unit);
+        try {
+            tell(messageFactory.apply(replyTo));
+        } catch (RuntimeException e) {
+            replyTo.completeExceptionally(e);
+        }
+        return replyTo;
+    }
 }
@@ -0,0 +1,144 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Actors of an actor system which were not stopped, used by {@link ActorSystem#terminate(long, java.util.concurrent.TimeUnit)}.
+ * Actors are referenced weakly: an actor which nobody references can't receive a message anymore, so it's garbage
+ * collected like before it was registered, without {@code postStop}. Busy actors are referenced by their dispatcher.
+ * <p>
+ * A registration is a node of an intrusive doubly linked list, so it costs one object per actor, and the lists are
+ * striped by the registering thread to reduce contention when many threads create actors.
+ */
+final class ActorRegistry {
+    private final ReferenceQueue<Actor<?>> collected = new ReferenceQueue<>();
+    private final Stripe[] stripes;
+
+    ActorRegistry() {
+        int stripesNumber = 1;
+        while (stripesNumber < 4 * Runtime.getRuntime().availableProcessors()) {
+            stripesNumber <<= 1;
+        }
+        stripes = new Stripe[stripesNumber];
+        for (int s = 0; s < stripes.length; s++) {
+            stripes[s] = new Stripe();
+        }
+    }
+
+    Registration register(Actor<?> actor) {
+        expungeCollected();
+        final Stripe stripe = stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)];
+        final Registration registration = new Registration(actor, collected, stripe);
+        stripe.link(registration);
+        return registration;
+    }
+
+    void unregister(Registration registration) {
+        registration.stripe.unlink(registration);
+        registration.clear();
+    }
+
+    /**
+     * @return number of registered actors which were not garbage collected yet
+     */
+    int size() {
+        expungeCollected();
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return strongly referenced copy of registered actors
+     */
+    List<Actor<?>> getActors() {
+        expungeCollected();
+        final List<Actor<?>> actors = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (Registration r = stripe.head; r != null; r = r.next) {
+                    final Actor<?> actor = r.get();
+                    if (actor != null) {
+                        actors.add(actor);
+                    }
+                }
+            }
+        }
+        return actors;
+    }
+
+    private void expungeCollected() {
+        Registration registration;
+        while ((registration = (Registration) collected.poll()) != null) {
+            registration.stripe.unlink(registration);
+        }
+    }
+
+    static final class Registration extends WeakReference<Actor<?>> {
+        private final Stripe stripe;
+        private Registration prev;
+        private Registration next;
+        private boolean linked;
+
+        private Registration(Actor<?> actor, ReferenceQueue<Actor<?>> queue, Stripe stripe) {
+            super(actor, queue);
+            this.stripe = stripe;
+        }
+    }
+
+    private static final class Stripe {
+        private Registration head;
+        private int size;
+
+        synchronized void link(Registration registration) {
+            registration.next = head;
+            if (head != null) {
+                head.prev = registration;
+            }
+            head = registration;
+            registration.linked = true;
+            size++;
+        }
+
+        /**
+         * An actor can be unregistered by its stop and once more by the reference queue after it's collected.
+         */
+        synchronized void unlink(Registration registration) {
+            if (!registration.linked) {
+                return;
+            }
+            if (registration.prev != null) {
+                registration.prev.next = registration.next;
+            } else {
+                head = registration.next;
+            }
+            if (registration.next != null) {
+                registration.next.prev = registration.prev;
+            }
+            registration.prev = null;
+            registration.next = null;
+            registration.linked = false;
+            size--;
+        }
+    }
+}
@@ -17,11 +17,17 @@ package com.fastactor;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
-import java.util.concurrent.*;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * An actor system is a flat group of actors which share thread pool. It is also the entry point for creating actors.
+ * Actors are run by the default {@link Dispatcher} of the system unless other dispatcher is specified.
  * <p>
  * There are several possibilities for creating actors it specific system:
  * <p>
@@ -31,31 +37,86 @@ import java.util.concurrent.*;
  * }
  */
 public final class ActorSystem {
+    /**
+     * Throughput of actors which process all messages from their mailbox before they release the thread.
+     */
+    public static final int UNLIMITED_THROUGHPUT = Integer.MAX_VALUE;
+
     private static final Logger logger = LogManager.getLogger(ActorSystem.class);
-    private final ForkJoinPool userThreadPool;
+    private static final long TIMER_TICK_MILLIS = 10;
+    private static final int TIMER_WHEEL_SIZE = 512;
+    private static final long MAX_TERMINATION_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private final Dispatcher defaultDispatcher;
+    private final boolean ownsDefaultDispatcher;
+    private final Set<Dispatcher> dispatchers;
+    private final int throughput;
+    private final HashedWheelTimer timer =
+            new HashedWheelTimer("Actor-Timer", TIMER_TICK_MILLIS, TimeUnit.MILLISECONDS, TIMER_WHEEL_SIZE);
+    private final ActorRegistry actors = new ActorRegistry();
+    private final ActorSystemMetrics metrics = new ActorSystemMetrics(actors);
+    private volatile ActorRef<DeadLetter> deadLetters = deadLetter -> logger.debug("{}", deadLetter);
+    private volatile boolean terminated;
+
+    /**
+     * Creates a new ActorSystem with the default dispatcher and with the maximum number of messages processed
+     * by an actor before the thread is released to other actors.
+     *
+     * @param defaultDispatcher dispatcher of actors which are created without explicit dispatcher
+     * @param throughput        number of messages processed by an actor in one run,
+     *                          {@link #UNLIMITED_THROUGHPUT} for draining the whole mailbox
+     */
+    public ActorSystem(Dispatcher defaultDispatcher, int throughput) {
+        this(defaultDispatcher, throughput, false);
+    }
+
+    private ActorSystem(Dispatcher defaultDispatcher, int throughput, boolean ownsDefaultDispatcher) {
+        logger.debug("Throughput is {}", throughput);
+        if (throughput <= 0) {
+            throw new IllegalArgumentException("Throughput must be positive, but it is " + throughput);
+        }
+
+        this.defaultDispatcher = defaultDispatcher;
+        this.ownsDefaultDispatcher = ownsDefaultDispatcher;
+        this.dispatchers = ConcurrentHashMap.newKeySet();
+        this.dispatchers.add(defaultDispatcher);
+        this.throughput = throughput;
+    }
+
+    /**
+     * Creates a new ActorSystem with the default dispatcher.
+     * Actors process all messages from their mailbox before they release the thread.
+     *
+     * @param defaultDispatcher dispatcher of actors which are created without explicit dispatcher
+     */
+    public ActorSystem(Dispatcher defaultDispatcher) {
+        this(defaultDispatcher, UNLIMITED_THROUGHPUT);
+    }
+
+    /**
+     * Creates a new ActorSystem with thread pool with the specific number of threads and with the maximum number
+     * of messages processed by an actor before the thread is released to other actors.
+     * <p>
+     * When the throughput is limited, the thread pool works in FIFO mode, so an actor which reaches the limit
+     * is queued behind the actors already waiting for the same thread. Otherwise the pool works in LIFO mode,
+     * which maps actors communicating together on the same thread. See {@link ForkJoinDispatcher}.
+     *
+     * @param maximumThreadsNumber number of threads which are shared by assigned actors
+     * @param throughput           number of messages processed by an actor in one run,
+     *                             {@link #UNLIMITED_THROUGHPUT} for draining the whole mailbox
+     */
+    public ActorSystem(int maximumThreadsNumber, int throughput) {
+        this(new ForkJoinDispatcher("Actor-Thread-User-", maximumThreadsNumber, throughput != UNLIMITED_THROUGHPUT),
+                throughput, true);
+    }
 
     /**
      * Creates a new ActorSystem with thread pool with the specific number of threads.
+     * Actors process all messages from their mailbox before they release the thread.
      *
      * @param maximumThreadsNumber number of threads which are shared by assigned actors
      */
     public ActorSystem(int maximumThreadsNumber) {
-        logger.debug("Maximum number of thread is {}", maximumThreadsNumber);
-
-        final ForkJoinWorkerThreadFactory usTFactory = new ForkJoinWorkerThreadFactory() {
-            @Override
-            public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
-                final ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
-                worker.setName("Actor-Thread-User-" + worker.getPoolIndex());
-                return worker;
-            }
-        };
-
-        userThreadPool = new ForkJoinPool(maximumThreadsNumber, usTFactory,
-                null, false,
-                maximumThreadsNumber,
-                maximumThreadsNumber,
-                1, null, 60, TimeUnit.SECONDS);
+        this(maximumThreadsNumber, UNLIMITED_THROUGHPUT);
     }
 
     /**
@@ -71,22 +132,209 @@ public final class ActorSystem {
      * @param actor actor assigned to the system
      */
     public <T> ActorRef<T> actorOf(Actor<T> actor) {
-        actor.setActorSystem(this);
-        actor.markAsScheduled();
-        userThreadPool.execute(actor.getPreStartRunnable());
+        return actorOf(actor, defaultDispatcher);
+    }
+
+    /**
+     * Create an actor in the system which is run by the specific dispatcher.
+     *
+     * @param actor      actor assigned to the system
+     * @param dispatcher dispatcher which runs the actor
+     */
+    public <T> ActorRef<T> actorOf(Actor<T> actor, Dispatcher dispatcher) {
+        assign(actor, dispatcher);
+        start(actor, dispatcher);
         return actor.getActorRef();
     }
 
+    /**
+     * Assigns the actor to the system without starting it, messages sent to it wait until it's started.
+     */
+    void assign(Actor<?> actor, Dispatcher dispatcher) {
+        checkNotTerminated();
+        addDispatcher(dispatcher);
+        actor.setActorSystem(this, dispatcher);
+        actor.markAsScheduled();
+    }
+
+    void start(Actor<?> actor, Dispatcher dispatcher) {
+        dispatcher.dispatch(actor, actor.getPreStartRunnable());
+    }
+
+    /**
+     * Create a int actor in the system, its ActorRef sends int messages without boxing.
+     *
+     * @param actor actor assigned to the system
+     */
+    public IntActorRef actorOf(IntActor actor) {
+        return (IntActorRef) actorOf((Actor<Integer>) actor);
+    }
+
+    /**
+     * Create a int actor in the system, its ActorRef sends int messages without boxing.
+     *
+     * @param actor      actor assigned to the system
+     * @param dispatcher dispatcher which runs the actor
+     */
+    public IntActorRef actorOf(IntActor actor, Dispatcher dispatcher) {
+        return (IntActorRef) actorOf((Actor<Integer>) actor, dispatcher);
+    }
+
+    /**
+     * Create a long actor in the system, its ActorRef sends long messages without boxing.
+     *
+     * @param actor actor assigned to the system
+     */
+    public LongActorRef actorOf(LongActor actor) {
+        return (LongActorRef) actorOf((Actor<Long>) actor);
+    }
+
+    /**
+     * Create a long actor in the system, its ActorRef sends long messages without boxing.
+     *
+     * @param actor      actor assigned to the system
+     * @param dispatcher dispatcher which runs the actor
+     */
+    public LongActorRef actorOf(LongActor actor, Dispatcher dispatcher) {
+        return (LongActorRef) actorOf((Actor<Long>) actor, dispatcher);
+    }
+
+    /**
+     * Create a double actor in the system, its ActorRef sends double messages without boxing.
+     *
+     * @param actor actor assigned to the system
+     */
+    public DoubleActorRef actorOf(DoubleActor actor) {
+        return (DoubleActorRef) actorOf((Actor<Double>) actor);
+    }
+
+    /**
+     * Create a double actor in the system, its ActorRef sends double messages without boxing.
+     *
+     * @param actor      actor assigned to the system
+     * @param dispatcher dispatcher which runs the actor
+     */
+    public DoubleActorRef actorOf(DoubleActor actor, Dispatcher dispatcher) {
+        return (DoubleActorRef) actorOf((Actor<Double>) actor, dispatcher);
+    }
+
     /**
      * Create a router in the system.
      *
      * @param router router assigned to the system
      */
     public <RouteeMessageType, RoutingType extends RouteeMessageType> ActorRef<RoutingType> actorOf(Router<RouteeMessageType, RoutingType> router) {
-        router.setActorSystem(this);
+        return actorOf(router, defaultDispatcher);
+    }
+
+    /**
+     * Create a router in the system whose routees are run by the specific dispatcher.
+     *
+     * @param router     router assigned to the system
+     * @param dispatcher dispatcher which runs the router and its routees
+     */
+    public <RouteeMessageType, RoutingType extends RouteeMessageType> ActorRef<RoutingType> actorOf(Router<RouteeMessageType, RoutingType> router, Dispatcher dispatcher) {
+        checkNotTerminated();
+        addDispatcher(dispatcher);
+        router.setActorSystem(this, dispatcher);
         return router.getActorRef();
     }
 
+    /**
+     * Stops the actor asynchronously. The actor finishes the message which is being processed, then its
+     * {@link Actor#postStop()} is called and it's removed from the system, so it can be garbage collected
+     * when nobody references its ActorRef. Messages waiting in its mailbox and messages sent to it later
+     * are sent to dead letters, see {@link #setDeadLetters(ActorRef)}.
+     * <p>
+     * Stopping of a router stops also its routees.
+     *
+     * @param actorRef actor which is stopped
+     */
+    public void stop(ActorRef<?> actorRef) {
+        final Actor<?> actor = Actor.getActor(actorRef);
+        if (actor == null) {
+            throw new IllegalArgumentException(actorRef + " is not an ActorRef of an actor");
+        }
+        actor.requestStop();
+    }
+
+    /**
+     * Sets receiver of messages which can't be delivered because their actor is stopped.
+     * By default dead letters are logged on debug level.
+     *
+     * @param deadLetters receiver of dead letters, it must not be stopped
+     */
+    public void setDeadLetters(ActorRef<DeadLetter> deadLetters) {
+        if (deadLetters == null) {
+            throw new IllegalArgumentException("Dead letters must be defined");
+        }
+        this.deadLetters = deadLetters;
+    }
+
+    /**
+     * @return number of actors which are not stopped, actors which are no longer referenced aren't counted
+     * after they are garbage collected
+     */
+    public int getActorsNumber() {
+        return actors.size();
+    }
+
+    /**
+     * Terminates the system: scheduled messages are cancelled, actors process messages waiting in their mailboxes,
+     * then all actors are stopped and the default dispatcher is shut down if it was created by the system.
+     * Dispatchers passed to the system are owned by the caller, so they can be shared with other systems.
+     * <p>
+     * Processing of waiting messages may take three quarters of the timeout, the rest is left for stopping of actors.
+     * When the timeout elapses, actors are stopped after their current message and remaining messages are sent
+     * to dead letters. No actor can be created in a terminated system.
+     *
+     * @param timeout max blocking time
+     * @param unit    unit for timeout
+     * @return true if all messages were processed and all actors were stopped in the timeout
+     */
+    public boolean terminate(long timeout, TimeUnit unit) {
+        final long timeoutNanos = unit.toNanos(timeout);
+        final long deadline = System.nanoTime() + timeoutNanos;
+        terminated = true;
+        timer.stop();
+        final boolean drained = waitOnIdle(timeoutNanos - timeoutNanos / 4, TimeUnit.NANOSECONDS);
+        for (Actor<?> actor : actors.getActors()) {
+            actor.requestStop();
+        }
+        final boolean stopped = awaitActorsStopped(deadline);
+        // stops which are still queued are run by the pool, later dispatches go to dead letters
+        if (ownsDefaultDispatcher) {
+            defaultDispatcher.shutdown();
+        }
+        return drained && stopped;
+    }
+
+    /**
+     * @return true if {@link #terminate(long, TimeUnit)} was called
+     */
+    public boolean isTerminated() {
+        return terminated;
+    }
+
+    private boolean awaitActorsStopped(long deadline) {
+        long parkNanos = 1;
+        while (actors.size() > 0) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(Math.min(parkNanos, remaining));
+            parkNanos = Math.min(parkNanos << 1, MAX_TERMINATION_PARK_NANOS);
+        }
+        return true;
+    }
+
+    private void checkNotTerminated() {
+        if (terminated) {
+            throw new IllegalStateException("Actor System is terminated");
+        }
+    }
+
     /**
      * Blocks until all actors in the system are idle.
      *
@@ -94,10 +342,125 @@ public final class ActorSystem {
      * @param unit    unit for timeout
      */
     public boolean waitOnIdle(long timeout, TimeUnit unit) {
-        return userThreadPool.awaitQuiescence(timeout, unit);
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Dispatcher dispatcher : dispatchers) {
+            if (!dispatcher.awaitQuiescence(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sends the message to the target once after the delay. The message is sent by {@link ActorRef#tell(Object)}
+     * from the timer thread of the system, with resolution of 10 ms.
+     * <p>
+     * Scheduling and cancelling cost O(1) regardless of number of pending messages (hashed timing wheel),
+     * so it's cheap to schedule a timeout for every request and cancel it when the request is done.
+     *
+     * @param delay   delay of the message
+     * @param unit    unit for delay
+     * @param target  receiver of the message
+     * @param message message which is sent
+     * @param <T>     type of the message
+     * @return handle which can cancel the message
+     */
+    public <T> Cancellable scheduleOnce(long delay, TimeUnit unit, ActorRef<T> target, T message) {
+        return timer.schedule(target, message, unit.toNanos(delay), 0);
+    }
+
+    /**
+     * Sends the message to the target repeatedly, first after the initial delay and then with the period,
+     * until it's cancelled. The period is measured between deadlines, so the rate doesn't drift.
+     * The same message instance is sent every time.
+     *
+     * @param initialDelay delay of the first message
+     * @param period       period between messages
+     * @param unit         unit for initialDelay and period
+     * @param target       receiver of the message
+     * @param message      message which is sent
+     * @param <T>          type of the message
+     * @return handle which can cancel sending of the message
+     */
+    public <T> Cancellable scheduleAtFixedRate(long initialDelay, long period, TimeUnit unit, ActorRef<T> target,
+                                               T message) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive, but it is " + period);
+        }
+        return timer.schedule(target, message, unit.toNanos(initialDelay), unit.toNanos(period));
+    }
+
+    /**
+     * @return dispatcher of actors which are created without explicit dispatcher
+     */
+    public Dispatcher getDefaultDispatcher() {
+        return defaultDispatcher;
+    }
+
+    private void addDispatcher(Dispatcher dispatcher) {
+        if (dispatcher != defaultDispatcher && !dispatchers.contains(dispatcher)) {
+            dispatchers.add(dispatcher);
+        }
+    }
+
+    /**
+     * Runtime metrics of all actors in the system. They are disabled by default,
+     * see {@link ActorSystemMetrics#setEnabled(boolean)}.
+     *
+     * @return metrics of the system
+     */
+    public ActorSystemMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Exports metrics of the system via JMX as {@code com.fastactor:type=ActorSystem,name=<name>}.
+     *
+     * @param name name of the system in JMX
+     * @return name of registered MBean, it can be used for unregistering
+     */
+    public ObjectName registerMBean(String name) {
+        return registerMBean(metrics, "com.fastactor:type=ActorSystem,name=" + ObjectName.quote(name));
+    }
+
+    /**
+     * Exports metrics of an actor of the system via JMX as {@code com.fastactor:type=Actor,name=<actor name>}.
+     * Registered MBean references the actor, so it should be unregistered when the actor isn't used anymore.
+     *
+     * @param actor actor assigned to the system
+     * @return name of registered MBean, it can be used for unregistering
+     */
+    public ObjectName registerMBean(Actor<?> actor) {
+        return registerMBean(actor.getMetrics(), "com.fastactor:type=Actor,name=" + ObjectName.quote(actor.getName()));
+    }
+
+    private static ObjectName registerMBean(Object mbean, String name) {
+        try {
+            ObjectName objectName = new ObjectName(name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("MBean " + name + " can't be registered", e);
+        }
+    }
+
+    int getThroughput() {
+        return throughput;
+    }
+
+    ActorRegistry.Registration addActor(Actor<?> actor) {
+        return actors.register(actor);
+    }
+
+    void removeActor(ActorRegistry.Registration registration) {
+        actors.unregister(registration);
     }
 
-    Executor getUserThreadPool() {
-        return userThreadPool;
+    void deadLetter(Object message, ActorRef<?> recipient) {
+        try {
+            deadLetters.tell(new DeadLetter(message, recipient));
+        } catch (Throwable e) {
+            logger.error("Dead letter to '{}' can't be delivered: ", recipient, e);
+        }
     }
 }
@@ -0,0 +1,112 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runtime metrics of all actors of an actor system. They are disabled by default.
+ * <p>
+ * Counters are striped, so actors running on different threads don't contend on them.
+ */
+public final class ActorSystemMetrics implements ActorSystemMetricsMXBean {
+    private final ActorRegistry actors;
+    private volatile boolean enabled;
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder exceptions = new LongAdder();
+    private final Histogram batchSizes = new Histogram.Concurrent();
+    private final Histogram processingTimes = new Histogram.Concurrent();
+
+    ActorSystemMetrics(ActorRegistry actors) {
+        this.actors = actors;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public long getMessagesEnqueued() {
+        return enqueued.sum();
+    }
+
+    @Override
+    public long getMessagesProcessed() {
+        return processed.sum();
+    }
+
+    /**
+     * Sum of mailbox sizes of all actors, see {@link ActorMetrics#getMailboxDepth()}, so it's linear time operation.
+     * Unlike the counters it doesn't depend on metrics being enabled and dropped messages don't skew it.
+     */
+    @Override
+    public long getMailboxDepth() {
+        long depth = 0;
+        for (Actor<?> actor : actors.getActors()) {
+            depth += actor.getMailboxSize();
+        }
+        return depth;
+    }
+
+    @Override
+    public long getScheduledRuns() {
+        return runs.sum();
+    }
+
+    @Override
+    public long getExceptions() {
+        return exceptions.sum();
+    }
+
+    @Override
+    public Histogram getBatchSizes() {
+        return batchSizes;
+    }
+
+    @Override
+    public Histogram getProcessingTimes() {
+        return processingTimes;
+    }
+
+    void recordEnqueued(int count) {
+        enqueued.add(count);
+    }
+
+    void recordProcessed(int count, long nanos) {
+        processed.add(count);
+        processingTimes.record(nanos);
+    }
+
+    void recordRun(int processed) {
+        runs.increment();
+        batchSizes.record(processed);
+    }
+
+    void recordException() {
+        exceptions.increment();
+    }
+
+    void recordFailedRun() {
+        runs.increment();
+        exceptions.increment();
+    }
+}
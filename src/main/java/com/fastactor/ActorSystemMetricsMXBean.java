@@ -0,0 +1,69 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+/**
+ * Runtime metrics of all actors of an actor system exported via JMX, see {@link ActorSystem#registerMBean(String)}.
+ * Metrics are recorded only while they are enabled.
+ */
+public interface ActorSystemMetricsMXBean {
+
+    /**
+     * @return true if metrics are recorded
+     */
+    boolean isEnabled();
+
+    /**
+     * Enables or disables recording of metrics of the actor system and its actors.
+     * Disabled metrics keep their values and don't slow down message passing.
+     *
+     * @param enabled true for recording of metrics
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * @return number of messages accepted by mailboxes
+     */
+    long getMessagesEnqueued();
+
+    /**
+     * @return number of messages passed to actors
+     */
+    long getMessagesProcessed();
+
+    /**
+     * @return approximate number of messages waiting in mailboxes of all actors
+     */
+    long getMailboxDepth();
+
+    /**
+     * @return how many times actors were scheduled to process their mailboxes
+     */
+    long getScheduledRuns();
+
+    /**
+     * @return number of exceptions thrown by actors
+     */
+    long getExceptions();
+
+    /**
+     * @return numbers of messages processed in one run of an actor, runs interrupted by an exception are not included
+     */
+    Histogram getBatchSizes();
+
+    /**
+     * @return durations of message processing (one call of {@code onMessage} or {@code onMessages}) in nanoseconds
+     */
+    Histogram getProcessingTimes();
+}
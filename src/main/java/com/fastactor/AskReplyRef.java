@@ -0,0 +1,93 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Temporary reply {@link ActorRef} created by {@link ActorRef#ask}. It is not a real actor, it has no mailbox
+ * and it's not scheduled, the first message sent to it completes the future and the next ones are ignored.
+ * The reference and the future are one object, so an ask allocates as little as possible.
+ * <p>
+ * Timeouts of all asks are scheduled on one {@link HashedWheelTimer}, any completion of the future (the reply,
+ * an exception or cancellation by the requester) cancels the timeout, so the timer doesn't keep the future.
+ *
+ * @param <MessageType> type of the reply
+ */
+final class AskReplyRef<MessageType> extends CompletableFuture<MessageType> implements ActorRef<MessageType> {
+    private static final long TIMER_TICK_MILLIS = 10;
+    private static final int TIMER_WHEEL_SIZE = 512;
+    private static final ActorRef<AskReplyRef<?>> EXPIRATION =
+            replyTo -> replyTo.completeExceptionally(new TimeoutException());
+    // written before the request is sent, so the reply sees it
+    HashedWheelTimer.Timeout<AskReplyRef<?>> timeout;
+
+    /**
+     * The timer is started by the first ask and its thread is a daemon, so it is never stopped.
+     */
+    private static final class TimerHolder {
+        static final HashedWheelTimer TIMER = new HashedWheelTimer("Ask-Timer", TIMER_TICK_MILLIS,
+                TimeUnit.MILLISECONDS, TIMER_WHEEL_SIZE);
+    }
+
+    void scheduleTimeout(long delay, TimeUnit unit) {
+        timeout = TimerHolder.TIMER.schedule(EXPIRATION, this, unit.toNanos(delay), 0);
+    }
+
+    void cancelTimeout() {
+        final HashedWheelTimer.Timeout<AskReplyRef<?>> scheduled = timeout;
+        if (scheduled != null) {
+            scheduled.cancel();
+        }
+    }
+
+    @Override
+    public void tell(MessageType message) {
+        tryTell(message);
+    }
+
+    @Override
+    public boolean tryTell(MessageType message) {
+        return complete(message);
+    }
+
+    @Override
+    public boolean complete(MessageType value) {
+        final boolean completed = super.complete(value);
+        if (completed) {
+            cancelTimeout();
+        }
+        return completed;
+    }
+
+    @Override
+    public boolean completeExceptionally(Throwable ex) {
+        final boolean completed = super.completeExceptionally(ex);
+        if (completed) {
+            cancelTimeout();
+        }
+        return completed;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        final boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled) {
+            cancelTimeout();
+        }
+        return cancelled;
+    }
+}
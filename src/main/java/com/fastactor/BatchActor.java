@@ -0,0 +1,159 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+import org.jctools.queues.MessagePassingQueue;
+
+import java.util.Queue;
+import java.util.function.Supplier;
+
+/**
+ * Actor which processes messages in batches. It's useful when the processing cost depends mainly on number
+ * of batches, e.g. flushing of buffers or bulk inserts.
+ * <p>
+ * Messages waiting in the mailbox are drained into a batch of at most {@code maxBatchSize} messages and passed
+ * to {@link #onMessages(MessageBatch)}. The batch is reused, so batching doesn't allocate any memory.
+ * The batch is never empty, and it's never bigger than throughput of the actor.
+ *
+ * @param <MessageType> base type of actor messages
+ */
+public abstract class BatchActor<MessageType> extends Actor<MessageType> {
+    /**
+     * Maximum size of batch used by constructors without this parameter.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+
+    private final MessageBatch<MessageType> batch;
+    private final MessagePassingQueue.Consumer<MessageType> batchAppender;
+
+    /**
+     * To be implemented by concrete BatchActor, this defines the behavior of the
+     * actor.
+     *
+     * @param messages messages in the order they were received, valid only during this call
+     */
+    abstract protected void onMessages(MessageBatch<MessageType> messages);
+
+    /**
+     * Init a new BatchActor with the specific name, maximum size of batch and mailbox queue
+     *
+     * @param name         name of the new actor
+     * @param maxBatchSize maximum number of messages in one batch
+     * @param queueFactory factory for mailbox creation
+     */
+    public BatchActor(String name, int maxBatchSize, Supplier<Queue<MessageType>> queueFactory) {
+        super(name, queueFactory);
+        batch = new MessageBatch<>(maxBatchSize);
+        batchAppender = batch::append;
+    }
+
+    /**
+     * Init a new BatchActor with the specific name, maximum size of batch and bounded mailbox,
+     * see {@link Actor#Actor(String, int, OverflowStrategy)}.
+     *
+     * @param name             name of the new actor
+     * @param maxBatchSize     maximum number of messages in one batch
+     * @param mailboxCapacity  maximum number of waiting messages, it is rounded up to the next power of two
+     * @param overflowStrategy what happens with messages which don't fit into the mailbox
+     */
+    public BatchActor(String name, int maxBatchSize, int mailboxCapacity, OverflowStrategy overflowStrategy) {
+        super(name, mailboxCapacity, overflowStrategy);
+        batch = new MessageBatch<>(maxBatchSize);
+        batchAppender = batch::append;
+    }
+
+    /**
+     * Init a new BatchActor with the specific name, maximum size of batch
+     * and default mailbox queue {@link org.jctools.queues.MpscLinkedQueue}
+     *
+     * @param name         name of the new actor
+     * @param maxBatchSize maximum number of messages in one batch
+     */
+    public BatchActor(String name, int maxBatchSize) {
+        super(name);
+        batch = new MessageBatch<>(maxBatchSize);
+        batchAppender = batch::append;
+    }
+
+    /**
+     * Init a new BatchActor with the specific name, {@link #DEFAULT_MAX_BATCH_SIZE}
+     * and default mailbox queue {@link org.jctools.queues.MpscLinkedQueue}
+     *
+     * @param name name of the new actor
+     */
+    public BatchActor(String name) {
+        this(name, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * Init a new BatchActor with the generated name, {@link #DEFAULT_MAX_BATCH_SIZE}
+     * and default mailbox queue {@link org.jctools.queues.MpscLinkedQueue}
+     */
+    public BatchActor() {
+        this(null);
+    }
+
+    /**
+     * Single message is processed as a batch of one message.
+     */
+    @Override
+    protected final void onMessage(MessageType message) {
+        batch.append(message);
+        try {
+            onMessages(batch);
+        } finally {
+            batch.reset();
+        }
+    }
+
+    @Override
+    int processMessages(int limit, ActorMetrics metrics) {
+        Queue<MessageType> mailbox = getMailbox();
+        int processed = 0;
+        while (processed < limit && !hasSystemMessages()) {
+            int batchLimit = Math.min(limit - processed, batch.capacity());
+            if (mailbox instanceof MessagePassingQueue) {
+                // the mailbox is a Queue<MessageType>, so it's a MessagePassingQueue of the same messages
+                @SuppressWarnings("unchecked")
+                MessagePassingQueue<MessageType> queue = (MessagePassingQueue<MessageType>) mailbox;
+                queue.drain(batchAppender, batchLimit);
+            } else {
+                MessageType message;
+                while (batch.size() < batchLimit && (message = mailbox.poll()) != null) {
+                    batch.append(message);
+                }
+            }
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            try {
+                if (metrics == null) {
+                    onMessages(batch);
+                } else {
+                    long start = System.nanoTime();
+                    try {
+                        onMessages(batch);
+                    } finally {
+                        metrics.recordProcessed(batch.size(), System.nanoTime() - start);
+                    }
+                }
+            } finally {
+                processed += batch.size();
+                batch.reset();
+            }
+        }
+        return processed;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatcher which runs actors on the thread which sends them a message, so everything is processed before
+ * {@link ActorRef#tell(Object)} returns. It's deterministic, which makes it useful for tests.
+ * <p>
+ * Actors scheduled while the thread already runs an actor are queued and run after it, so long chains
+ * of messages don't grow the stack.
+ */
+public final class CallingThreadDispatcher implements Dispatcher {
+    private final ThreadLocal<ArrayDeque<Runnable>> pendingTasks = new ThreadLocal<>();
+
+    @Override
+    public void dispatch(Actor<?> actor, Runnable task) {
+        ArrayDeque<Runnable> pending = pendingTasks.get();
+        if (pending != null) {
+            pending.add(task);
+            return;
+        }
+
+        pending = new ArrayDeque<>();
+        pendingTasks.set(pending);
+        try {
+            for (Runnable next = task; next != null; next = pending.poll()) {
+                next.run();
+            }
+        } finally {
+            pendingTasks.remove();
+        }
+    }
+
+    @Override
+    public boolean isDispatcherThread() {
+        return pendingTasks.get() != null;
+    }
+
+    @Override
+    public boolean awaitQuiescence(long timeout, TimeUnit unit) {
+        return true;
+    }
+
+    /**
+     * There are no threads to stop.
+     */
+    @Override
+    public void shutdown() {
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+/**
+ * Handle of a scheduled message, see {@link ActorSystem#scheduleOnce} and {@link ActorSystem#scheduleAtFixedRate}.
+ * <p>
+ * Methods of this interface are thread-safe.
+ */
+public interface Cancellable {
+
+    /**
+     * Cancels the scheduled message. A message which was already sent stays in the mailbox of the target actor.
+     *
+     * @return true if this call cancelled it, false if it was already cancelled or sent (single message only)
+     */
+    boolean cancel();
+
+    /**
+     * @return true if the message was cancelled
+     */
+    boolean isCancelled();
+
+    /**
+     * @return true if the message is waiting to be sent, for periodic messages until they are cancelled
+     */
+    boolean isPending();
+}
@@ -0,0 +1,26 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+/**
+ * Marker of messages which skip messages waiting in the mailbox, e.g. configuration reloads, metrics probes
+ * or timer ticks. Control messages go to a separate unbounded queue of the actor, which is processed before
+ * the mailbox and which interrupts processing of the mailbox, so they take effect even when the actor is deeply
+ * backlogged. It's intended for low volume of messages.
+ * <p>
+ * Control messages are processed in the order they were sent, but there is no ordering between them
+ * and other messages. Stopping of the actor uses the same queue.
+ */
+public interface ControlMessage {
+}
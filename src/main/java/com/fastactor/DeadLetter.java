@@ -0,0 +1,47 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+/**
+ * Message which was sent to a stopped actor, or which was waiting in its mailbox when the actor stopped.
+ * Dead letters are sent to {@link ActorSystem#setDeadLetters(ActorRef)}.
+ */
+public final class DeadLetter {
+    private final Object message;
+    private final ActorRef<?> recipient;
+
+    DeadLetter(Object message, ActorRef<?> recipient) {
+        this.message = message;
+        this.recipient = recipient;
+    }
+
+    /**
+     * @return message which was not delivered
+     */
+    public Object getMessage() {
+        return message;
+    }
+
+    /**
+     * @return stopped actor the message was sent to
+     */
+    public ActorRef<?> getRecipient() {
+        return recipient;
+    }
+
+    @Override
+    public String toString() {
+        return "DeadLetter(" + message + " to " + recipient + ")";
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Execution engine which runs actors. Each actor is assigned to one dispatcher when it's added to an actor system,
+ * see {@link ActorSystem#actorOf(Actor, Dispatcher)}, so actors with different requirements (CPU heavy, blocking,
+ * latency sensitive) can be isolated from each other inside one actor system.
+ * <p>
+ * An actor is dispatched when it has messages to process and it isn't running yet, so tasks of one actor
+ * are never executed concurrently. One dispatcher can be shared by several actor systems.
+ */
+public interface Dispatcher {
+
+    /**
+     * Runs the task of the actor asynchronously.
+     *
+     * @param actor actor which is dispatched
+     * @param task  processing of the actor, it must be executed exactly once
+     */
+    void dispatch(Actor<?> actor, Runnable task);
+
+    /**
+     * Runs the task of the actor which released its thread because it reached its throughput, the actor should be
+     * queued behind actors already waiting for the thread. By default it's the same as {@link #dispatch}.
+     *
+     * @param actor actor which is dispatched
+     * @param task  processing of the actor, it must be executed exactly once
+     */
+    default void redispatch(Actor<?> actor, Runnable task) {
+        dispatch(actor, task);
+    }
+
+    /**
+     * Used to detect calls which could deadlock the dispatcher, e.g. a thread waiting for free space in a mailbox
+     * of an actor which is run by the same thread.
+     *
+     * @return true if the current thread is a thread of this dispatcher
+     */
+    boolean isDispatcherThread();
+
+    /**
+     * Blocks until all actors of the dispatcher are idle.
+     *
+     * @param timeout max blocking time
+     * @param unit    unit for timeout
+     * @return true if the dispatcher is idle, false if the timeout elapsed
+     */
+    boolean awaitQuiescence(long timeout, TimeUnit unit);
+
+    /**
+     * Stops threads of the dispatcher. Tasks which were already dispatched may still be run, new tasks are rejected
+     * by {@link java.util.concurrent.RejectedExecutionException} or discarded. Actors whose dispatch is rejected
+     * are stopped and their messages are sent to dead letters. The dispatcher is shut down by its owner, e.g. by {@link ActorSystem#terminate(long, TimeUnit)}
+     * when it was created by the actor system.
+     */
+    void shutdown();
+}
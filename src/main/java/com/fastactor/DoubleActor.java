@@ -0,0 +1,79 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+import java.util.Queue;
+
+/**
+ * Actor which receives double messages by {@link #onMessage(double)}. Its mailbox is a bounded ring buffer of primitive
+ * values and its ActorRef is {@link DoubleActorRef}, so sending a message neither boxes it nor allocates a queue node.
+ * Boxed messages sent by the generic {@link ActorRef#tell(Object)} are accepted as well.
+ * <p>
+ * The mailbox is consumed by one thread, so {@link OverflowStrategy#DROP_OLDEST} is not supported.
+ */
+public abstract class DoubleActor extends Actor<Double> {
+
+    /**
+     * @param name             name of the new actor
+     * @param mailboxCapacity  maximum number of waiting messages, it is rounded up to the next power of two
+     * @param overflowStrategy what happens with messages which don't fit into the mailbox
+     */
+    public DoubleActor(String name, int mailboxCapacity, OverflowStrategy overflowStrategy) {
+        super(name, PrimitiveRingMailbox.factory(mailboxCapacity, bits -> Double.longBitsToDouble(bits), Double::doubleToRawLongBits),
+                PrimitiveRingMailbox.checkOverflowStrategy(overflowStrategy));
+    }
+
+    /**
+     * To be implemented by concrete Actor, this defines the behavior of the actor.
+     *
+     * @param message received message
+     */
+    protected abstract void onMessage(double message);
+
+    @Override
+    protected final void onMessage(Double message) {
+        onMessage(message.doubleValue());
+    }
+
+    @Override
+    ActorRefImpl createActorRef() {
+        return new DoubleActorRefImpl();
+    }
+
+    @Override
+    int processMessages(int limit, ActorMetrics metrics) {
+        final Queue<Double> mailbox = getMailbox();
+        if (metrics != null || !(mailbox instanceof PrimitiveRingMailbox)) {
+            return super.processMessages(limit, metrics);
+        }
+        final PrimitiveRingMailbox<Double> ring = (PrimitiveRingMailbox<Double>) mailbox;
+        int processed = 0;
+        while (processed < limit && !hasSystemMessages() && ring.canPoll()) {
+            processed++;
+            final long bits = ring.pollBits();
+            onMessage(Double.longBitsToDouble(bits));
+        }
+        return processed;
+    }
+
+    private final class DoubleActorRefImpl extends ActorRefImpl implements DoubleActorRef {
+
+        @Override
+        public void tell(double message) {
+            if (!offerBits(Double.doubleToRawLongBits(message))) {
+                tell(Double.valueOf(message));
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Actor which is addressed by a key through {@link EntityRegion}. The region creates the entity on the first
+ * message for its key and passivates it when it didn't receive any message for the idle timeout of the region:
+ * the state returned by {@link #saveState()} goes to the {@link EntityStore} and the actor is stopped, so it can be
+ * garbage collected. The next message for the key creates a new instance, which gets the saved state by
+ * {@link #restoreState(byte[])} before {@link #preStart()}; messages sent meanwhile wait in its mailbox.
+ * <p>
+ * Messages which reach the entity after it decided to passivate are forwarded to the next incarnation, so they
+ * aren't lost, but they may be processed after messages which were sent later by the same sender.
+ * Stopping the entity by {@link ActorSystem#stop(ActorRef)} doesn't save its state, terminating the actor system
+ * saves states of all active entities.
+ *
+ * @param <KeyType>     type of keys of entities
+ * @param <MessageType> base type of entity messages
+ */
+public abstract class Entity<KeyType, MessageType> extends Actor<MessageType> {
+    private static final Logger logger = LogManager.getLogger(Entity.class);
+    private static final ActorRef<Entity<?, ?>> IDLE_CHECKER = entity -> entity.tellSystemTask(entity::checkIdle);
+    private KeyType key;
+    private EntityRegion<KeyType, MessageType> region;
+    // set by every run with messages and reset by the idle check, so processing doesn't read the clock
+    private boolean active;
+    private boolean passivated;
+
+    /**
+     * @param name name of the new entity
+     */
+    public Entity(String name) {
+        super(name);
+    }
+
+    /**
+     * @param name         name of the new entity
+     * @param queueFactory factory for creation of the mailbox
+     */
+    public Entity(String name, Supplier<Queue<MessageType>> queueFactory) {
+        super(name, queueFactory);
+    }
+
+    /**
+     * Creates an entity with a generated name.
+     */
+    public Entity() {
+        super();
+    }
+
+    /**
+     * Serializes the state of the entity which is being passivated. It's called by the thread of the entity.
+     *
+     * @return state passed to {@link #restoreState(byte[])} of the next incarnation, null if there is no state
+     */
+    protected abstract byte[] saveState();
+
+    /**
+     * Restores the state saved by the previous incarnation, it's called by the thread of the entity
+     * before {@link #preStart()}.
+     *
+     * @param state saved state, null for an entity which was never passivated
+     */
+    protected abstract void restoreState(byte[] state);
+
+    /**
+     * @return key of the entity
+     */
+    protected final KeyType getKey() {
+        return key;
+    }
+
+    void init(KeyType key, EntityRegion<KeyType, MessageType> region) {
+        this.key = key;
+        this.region = region;
+    }
+
+    @Override
+    void beforePreStart() {
+        restoreState(region.getStore().load(key));
+        scheduleIdleCheck();
+    }
+
+    @Override
+    int processMessages(int limit, ActorMetrics metrics) {
+        final int processed = super.processMessages(limit, metrics);
+        if (processed > 0) {
+            active = true;
+        }
+        return processed;
+    }
+
+    /**
+     * An entity is passivated by the first check which finds it inactive since the previous check,
+     * i.e. after between one and two idle timeouts.
+     */
+    private void checkIdle() {
+        if (active || hasWork()) {
+            active = false;
+            scheduleIdleCheck();
+            return;
+        }
+        if (!storeState()) {
+            scheduleIdleCheck();
+            return;
+        }
+        passivated = true;
+        stopNow();
+    }
+
+    private boolean storeState() {
+        try {
+            final byte[] state = saveState();
+            if (state != null) {
+                region.getStore().save(key, state);
+            } else {
+                region.getStore().remove(key);
+            }
+            return true;
+        } catch (Throwable e) {
+            logger.error("State of entity '{}' was not saved: ", getName(), e);
+            return false;
+        }
+    }
+
+    private void scheduleIdleCheck() {
+        region.getActorSystem().scheduleOnce(region.getIdleTimeoutNanos(), TimeUnit.NANOSECONDS, IDLE_CHECKER, this);
+    }
+
+    /**
+     * Active entities save their state when the actor system is terminated.
+     */
+    @Override
+    void stopNow() {
+        if (!passivated && region.getActorSystem().isTerminated()) {
+            storeState();
+        }
+        super.stopNow();
+        region.stopped(key, this);
+    }
+
+    /**
+     * Messages which raced with passivation or stop go to the next incarnation. The entity is removed
+     * from the region first, because the sender may have seen it stopped before {@link #stopNow()} removed it.
+     */
+    @Override
+    void deadLetter(Object message) {
+        region.stopped(key, this);
+        if (region.getActorSystem().isTerminated()) {
+            super.deadLetter(message);
+        } else {
+            region.forward(key, message);
+        }
+    }
+}
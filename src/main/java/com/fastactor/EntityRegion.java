@@ -0,0 +1,161 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Set of {@link Entity} actors addressed by keys. An entity is created by the first message for its key
+ * and it's passivated after the idle timeout, so only recently used entities occupy the heap and the long tail
+ * lives in the {@link EntityStore}. References returned by {@link #entityRef(Object)} stay valid across
+ * passivations.
+ * <pre>{@code
+ * EntityRegion<String, Deposit> accounts = new EntityRegion<>(actorSystem, id -> new Account(),
+ *         new OffHeapEntityStore<>(), 10, TimeUnit.MINUTES);
+ * accounts.tell("42", new Deposit(100));
+ * }</pre>
+ *
+ * @param <KeyType>     type of keys of entities
+ * @param <MessageType> base type of entity messages
+ */
+public final class EntityRegion<KeyType, MessageType> {
+    private final ActorSystem actorSystem;
+    private final Dispatcher dispatcher;
+    private final Function<? super KeyType, ? extends Entity<KeyType, MessageType>> entityFactory;
+    private final EntityStore<KeyType> store;
+    private final long idleTimeoutNanos;
+    private final ConcurrentHashMap<KeyType, Entity<KeyType, MessageType>> entities = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a region whose entities are run by the default dispatcher of the system.
+     *
+     * @param actorSystem   system of the entities
+     * @param entityFactory creates a new entity for a key, the state is restored later
+     * @param store         storage of states of passivated entities
+     * @param idleTimeout   entities which don't receive any message for this time are passivated
+     * @param unit          unit for idleTimeout
+     */
+    public EntityRegion(ActorSystem actorSystem, Function<? super KeyType, ? extends Entity<KeyType, MessageType>> entityFactory,
+                        EntityStore<KeyType> store, long idleTimeout, TimeUnit unit) {
+        this(actorSystem, entityFactory, store, idleTimeout, unit, actorSystem.getDefaultDispatcher());
+    }
+
+    /**
+     * @param actorSystem   system of the entities
+     * @param entityFactory creates a new entity for a key, the state is restored later
+     * @param store         storage of states of passivated entities
+     * @param idleTimeout   entities which don't receive any message for this time are passivated
+     * @param unit          unit for idleTimeout
+     * @param dispatcher    dispatcher which runs the entities
+     */
+    public EntityRegion(ActorSystem actorSystem, Function<? super KeyType, ? extends Entity<KeyType, MessageType>> entityFactory,
+                        EntityStore<KeyType> store, long idleTimeout, TimeUnit unit, Dispatcher dispatcher) {
+        if (idleTimeout <= 0) {
+            throw new IllegalArgumentException("Idle timeout must be positive, but it is " + idleTimeout);
+        }
+        this.actorSystem = actorSystem;
+        this.dispatcher = dispatcher;
+        this.entityFactory = entityFactory;
+        this.store = store;
+        this.idleTimeoutNanos = unit.toNanos(idleTimeout);
+    }
+
+    /**
+     * Sends the message to the entity, it activates the entity if it isn't active.
+     *
+     * @param key     key of the entity
+     * @param message message for the entity
+     */
+    public void tell(KeyType key, MessageType message) {
+        Entity<KeyType, MessageType> entity = entities.get(key);
+        if (entity == null) {
+            entity = activate(key);
+        }
+        entity.getActorRef().tell(message);
+    }
+
+    /**
+     * @param key key of the entity
+     * @return reference which sends messages to the current incarnation of the entity
+     */
+    public ActorRef<MessageType> entityRef(KeyType key) {
+        return new EntityRef(key);
+    }
+
+    /**
+     * @return number of entities which are not passivated
+     */
+    public int getActiveEntitiesNumber() {
+        return entities.size();
+    }
+
+    EntityStore<KeyType> getStore() {
+        return store;
+    }
+
+    ActorSystem getActorSystem() {
+        return actorSystem;
+    }
+
+    long getIdleTimeoutNanos() {
+        return idleTimeoutNanos;
+    }
+
+    @SuppressWarnings("unchecked")
+    void forward(KeyType key, Object message) {
+        tell(key, (MessageType) message);
+    }
+
+    void stopped(KeyType key, Entity<KeyType, MessageType> entity) {
+        entities.remove(key, entity);
+    }
+
+    /**
+     * The entity is assigned to the system before it's published, so messages sent by other threads wait
+     * in its mailbox until it's started, and the restoring of its state isn't run under a lock of the map.
+     */
+    private Entity<KeyType, MessageType> activate(KeyType key) {
+        final Entity<KeyType, MessageType> created = entityFactory.apply(key);
+        created.init(key, this);
+        actorSystem.assign(created, dispatcher);
+        final Entity<KeyType, MessageType> existing = entities.putIfAbsent(key, created);
+        if (existing != null) {
+            // another thread activated the entity, this one was never started
+            created.unregister();
+            return existing;
+        }
+        actorSystem.start(created, dispatcher);
+        return created;
+    }
+
+    private final class EntityRef implements ActorRef<MessageType> {
+        private final KeyType key;
+
+        EntityRef(KeyType key) {
+            this.key = key;
+        }
+
+        @Override
+        public void tell(MessageType message) {
+            EntityRegion.this.tell(key, message);
+        }
+
+        @Override
+        public String toString() {
+            return "EntityRef{" + key + '}';
+        }
+    }
+}
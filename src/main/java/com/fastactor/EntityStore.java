@@ -0,0 +1,44 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+/**
+ * Storage of states of passivated entities, see {@link EntityRegion}. It's called by threads of entities,
+ * concurrently for different keys, but never concurrently for the same key.
+ *
+ * @param <KeyType> type of keys of entities
+ */
+public interface EntityStore<KeyType> {
+
+    /**
+     * Stores the state of the entity which is being passivated, it replaces the previous state.
+     *
+     * @param key   key of the entity
+     * @param state serialized state of the entity
+     */
+    void save(KeyType key, byte[] state);
+
+    /**
+     * @param key key of the entity which is being activated
+     * @return the last saved state, null if there isn't any
+     */
+    byte[] load(KeyType key);
+
+    /**
+     * Deletes the state of the entity.
+     *
+     * @param key key of the entity
+     */
+    void remove(KeyType key);
+}
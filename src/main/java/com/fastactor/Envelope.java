@@ -0,0 +1,24 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+/**
+ * Base class of messages which can be linked directly into {@link IntrusiveMailbox}, so sending them allocates
+ * no queue node. The link is a field of the message, therefore one instance can wait in at most one mailbox
+ * at a time: it can't be broadcast, sent to several actors or sent again before it's received.
+ * It can be sent again once its {@code onMessage} was called.
+ */
+public abstract class Envelope {
+    volatile Envelope next;
+}
@@ -0,0 +1,533 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of events of {@link PersistentActor}s on local disk. Events of all actors go to a sequence of
+ * memory-mapped segment files, a new segment is started when an event doesn't fit into the current one, so appending
+ * an event is a copy to memory under a short lock and no system call.
+ * <p>
+ * Durability is confirmed by a group commit: the flusher thread forces all pages written since its previous flush
+ * to the disk by one fsync and then notifies the actors whose events were covered. Events appended during an fsync
+ * are batched into the next one, so the number of fsyncs adapts to the disk and not to the number of events.
+ * <p>
+ * A record is {@code [length][crc32][sequence number][hash of persistence id][id length][id][event]}, the length
+ * is written last. Opening stops at the first empty or corrupted record of the last segment, which is the tail torn
+ * by a crash. Snapshots are separate files, they are replaced atomically.
+ * <p>
+ * The journal keeps the recovery position of every persistence id: the position of its last snapshot or of its
+ * first event. Replay starts there, so a snapshot limits both the events which are applied and the part of
+ * the journal which is read. Segments before all recovery positions are deleted when a new segment is started,
+ * or by {@link #deleteCoveredSegments()}; a persistence id without a snapshot keeps its first segment.
+ */
+public final class EventJournal implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(EventJournal.class);
+    private static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 2;
+    private static final String SEGMENT_SUFFIX = ".segment";
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    private static final int SNAPSHOT_HEADER_SIZE = Long.BYTES + Long.BYTES;
+    private final Path directory;
+    private final Path snapshotDirectory;
+    private final int segmentSize;
+    // segments from firstSegment to the current one
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final Map<String, Long> recoveryPositions = new HashMap<>();
+    private final List<MappedByteBuffer> unflushedSegments = new ArrayList<>();
+    private final Flusher flusher;
+    private MappedByteBuffer segment;
+    private int firstSegment;
+    private int writePosition;
+    private long appended;
+    private long flushed;
+    private List<PersistentActor<?, ?>> waitingActors = new ArrayList<>();
+    private boolean closed;
+    private boolean flushFailed;
+
+    /**
+     * Opens or creates a journal with segments of 64 MB.
+     *
+     * @param directory directory of journal files, it's created if it doesn't exist
+     */
+    public EventJournal(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens or creates a journal.
+     *
+     * @param directory   directory of journal files, it's created if it doesn't exist
+     * @param segmentSize size of a segment file in bytes, it limits also the size of an event
+     */
+    public EventJournal(Path directory, int segmentSize) throws IOException {
+        if (segmentSize <= HEADER_SIZE) {
+            throw new IllegalArgumentException("Segment size must be greater than " + HEADER_SIZE
+                    + ", but it is " + segmentSize);
+        }
+        this.directory = directory;
+        this.snapshotDirectory = directory.resolve("snapshots");
+        this.segmentSize = segmentSize;
+        Files.createDirectories(snapshotDirectory);
+
+        final List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);
+        for (Path file : files) {
+            segments.add(map(file));
+        }
+        if (segments.isEmpty()) {
+            segments.add(map(segmentPath(0)));
+        } else {
+            final String name = files.get(0).getFileName().toString();
+            firstSegment = Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length()), 16);
+        }
+        segment = segments.get(segments.size() - 1);
+        writePosition = recoverEnd(segment);
+        loadRecoveryPositions();
+        flusher = new Flusher();
+        flusher.start();
+    }
+
+    /**
+     * Forces all events to the disk and stops the flusher thread. Appending to the closed journal fails.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Appends the event, the actor is notified by {@link PersistentActor#eventsFlushed()} when it's on the disk.
+     */
+    synchronized void append(PersistentActor<?, ?> actor, long sequenceNr, byte[] event, boolean notify) {
+        if (closed) {
+            throw new IllegalStateException("Journal " + directory + (flushFailed ? " failed to flush events"
+                    : " is closed"));
+        }
+        final byte[] id = actor.getPersistenceIdBytes();
+        final int length = HEADER_SIZE + id.length + event.length;
+        if (length > segmentSize) {
+            throw new IllegalArgumentException("Event of " + event.length + " bytes doesn't fit into segment of "
+                    + segmentSize + " bytes");
+        }
+        if (writePosition + length > segmentSize) {
+            rollSegment();
+        }
+        if (!actor.recoveryPositionKnown) {
+            recoveryPositions.putIfAbsent(actor.getPersistenceId(), position(getCurrentSegment(), writePosition));
+            actor.recoveryPositionKnown = true;
+        }
+
+        final ByteBuffer record = segment.duplicate();
+        record.position(writePosition + 8);
+        record.putLong(sequenceNr).putInt(actor.getPersistenceIdHash()).putShort((short) id.length)
+                .put(id).put(event);
+        record.position(writePosition + 8).limit(writePosition + length);
+        final CRC32 crc = new CRC32();
+        crc.update(record);
+        segment.putInt(writePosition + 4, (int) crc.getValue());
+        segment.putInt(writePosition, length);
+        writePosition += length;
+
+        if (appended++ == flushed) {
+            notifyAll();
+        }
+        if (notify) {
+            actor.appendedSequenceNr = sequenceNr;
+            if (!actor.waitingForFlush) {
+                actor.waitingForFlush = true;
+                waitingActors.add(actor);
+            }
+        }
+    }
+
+    /**
+     * Reads events of the actor in the order they were appended, from its recovery position.
+     *
+     * @param fromSequenceNr events with greater sequence numbers are passed to the consumer
+     * @return the greatest sequence number of the actor since its recovery position, 0 if there isn't any
+     */
+    long replay(PersistentActor<?, ?> actor, long fromSequenceNr, EventConsumer consumer) {
+        final List<MappedByteBuffer> readSegments;
+        final int readFirstSegment;
+        final int end;
+        final Long start;
+        synchronized (this) {
+            readSegments = new ArrayList<>(segments);
+            readFirstSegment = firstSegment;
+            end = writePosition;
+            start = recoveryPositions.get(actor.getPersistenceId());
+        }
+        if (start == null) {
+            return 0;
+        }
+        final byte[] id = actor.getPersistenceIdBytes();
+        final int idHash = actor.getPersistenceIdHash();
+        long lastSequenceNr = 0;
+        for (int s = Math.max(segmentIndex(start) - readFirstSegment, 0); s < readSegments.size(); s++) {
+            final ByteBuffer buffer = readSegments.get(s).duplicate();
+            final int limit = s == readSegments.size() - 1 ? end : segmentSize;
+            int position = s == segmentIndex(start) - readFirstSegment ? offset(start) : 0;
+            int length;
+            while (position + HEADER_SIZE <= limit && (length = buffer.getInt(position)) > 0) {
+                if (buffer.getInt(position + 16) == idHash && hasId(buffer, position, id)) {
+                    final long sequenceNr = buffer.getLong(position + 8);
+                    lastSequenceNr = sequenceNr;
+                    if (sequenceNr > fromSequenceNr) {
+                        final byte[] event = new byte[length - HEADER_SIZE - id.length];
+                        buffer.position(position + HEADER_SIZE + id.length);
+                        buffer.get(event);
+                        consumer.accept(sequenceNr, event);
+                    }
+                }
+                position += length;
+            }
+        }
+        return lastSequenceNr;
+    }
+
+    /**
+     * Deletes segments which are before the recovery positions of all persistence ids, they are never read again.
+     * It's called also when a new segment is started.
+     *
+     * @return number of deleted segments
+     */
+    public synchronized int deleteCoveredSegments() {
+        int coveredSegment = getCurrentSegment();
+        for (long position : recoveryPositions.values()) {
+            coveredSegment = Math.min(coveredSegment, segmentIndex(position));
+        }
+        int deleted = 0;
+        while (firstSegment < coveredSegment) {
+            // a replay may still read the mapping, it stays valid after the file is deleted
+            segments.remove(0);
+            try {
+                Files.deleteIfExists(segmentPath(firstSegment));
+            } catch (IOException e) {
+                logger.warn("Segment {} of journal {} was not deleted: ", firstSegment, directory, e);
+            }
+            firstSegment++;
+            deleted++;
+        }
+        return deleted;
+    }
+
+    /**
+     * @return number of segments which were not deleted
+     */
+    public synchronized int getSegmentsNumber() {
+        return segments.size();
+    }
+
+    /**
+     * Replaces the snapshot of the actor, the new one is on the disk when this method returns. Events before
+     * the snapshot are forced first, so the end of the journal recovered after a crash can't precede the position
+     * recorded by the snapshot.
+     */
+    void saveSnapshot(PersistentActor<?, ?> actor, long sequenceNr, byte[] state) throws IOException {
+        // events after the snapshot are appended after this position
+        final long position;
+        synchronized (this) {
+            position = position(getCurrentSegment(), writePosition);
+            final long target = appended;
+            while (flushed < target) {
+                if (flushFailed) {
+                    throw new IOException("Journal " + directory + " failed to flush events");
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for flush of journal " + directory);
+                }
+            }
+        }
+        final Path file = snapshotPath(actor);
+        final Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer buffer = ByteBuffer.allocate(SNAPSHOT_HEADER_SIZE + state.length);
+            buffer.putLong(sequenceNr).putLong(position).put(state).flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        synchronized (this) {
+            recoveryPositions.put(actor.getPersistenceId(), position);
+            actor.recoveryPositionKnown = true;
+        }
+    }
+
+    /**
+     * @return the last snapshot of the actor positioned at its state, its sequence number is at index 0,
+     * null if there isn't any
+     */
+    ByteBuffer loadSnapshot(PersistentActor<?, ?> actor) throws IOException {
+        final Path file = snapshotPath(actor);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        final ByteBuffer snapshot = ByteBuffer.wrap(Files.readAllBytes(file));
+        snapshot.position(SNAPSHOT_HEADER_SIZE);
+        return snapshot;
+    }
+
+    /**
+     * Recovery positions are the first events of persistence ids, replaced by positions of their snapshots.
+     */
+    private void loadRecoveryPositions() throws IOException {
+        for (int s = 0; s < segments.size(); s++) {
+            final ByteBuffer buffer = segments.get(s).duplicate();
+            final int limit = s == segments.size() - 1 ? writePosition : segmentSize;
+            int position = 0;
+            int length;
+            while (position + HEADER_SIZE <= limit && (length = buffer.getInt(position)) > 0) {
+                final byte[] id = new byte[buffer.getShort(position + 20)];
+                buffer.position(position + HEADER_SIZE);
+                buffer.get(id);
+                recoveryPositions.putIfAbsent(new String(id, StandardCharsets.UTF_8),
+                        position(firstSegment + s, position));
+                position += length;
+            }
+        }
+        // a snapshot points behind the recovered end when the disk lost forced pages, the position is moved
+        // to the end in the file too, so events appended since then are never skipped
+        final long end = position(getCurrentSegment(), writePosition);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(snapshotDirectory, "*" + SNAPSHOT_SUFFIX)) {
+            for (Path file : stream) {
+                final String name = file.getFileName().toString();
+                final byte[] id = Base64.getUrlDecoder().decode(name.substring(0,
+                        name.length() - SNAPSHOT_SUFFIX.length()));
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    final ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER_SIZE);
+                    while (header.hasRemaining() && channel.read(header) >= 0) {
+                        // reads the whole header
+                    }
+                    long position = header.getLong(Long.BYTES);
+                    if (position > end) {
+                        logger.warn("Snapshot {} of journal {} points behind its end, it's moved to the end",
+                                file.getFileName(), directory);
+                        position = end;
+                        final ByteBuffer clamped = ByteBuffer.allocate(Long.BYTES).putLong(0, position);
+                        while (clamped.hasRemaining()) {
+                            channel.write(clamped, Long.BYTES + clamped.position());
+                        }
+                        channel.force(true);
+                    }
+                    recoveryPositions.put(new String(id, StandardCharsets.UTF_8), position);
+                }
+            }
+        }
+    }
+
+    private int getCurrentSegment() {
+        return firstSegment + segments.size() - 1;
+    }
+
+    private static long position(int segmentIndex, int offset) {
+        return (long) segmentIndex << 32 | offset;
+    }
+
+    private static int segmentIndex(long position) {
+        return (int) (position >>> 32);
+    }
+
+    private static int offset(long position) {
+        return (int) position;
+    }
+
+    private Path snapshotPath(PersistentActor<?, ?> actor) {
+        return snapshotDirectory.resolve(Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(actor.getPersistenceIdBytes()) + SNAPSHOT_SUFFIX);
+    }
+
+    private static boolean hasId(ByteBuffer buffer, int position, byte[] id) {
+        if (buffer.getShort(position + 20) != id.length) {
+            return false;
+        }
+        for (int i = 0; i < id.length; i++) {
+            if (buffer.get(position + HEADER_SIZE + i) != id[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rollSegment() {
+        try {
+            final MappedByteBuffer next = map(segmentPath(getCurrentSegment() + 1));
+            // the flusher forces the full segment once more, then it's only read by replays
+            unflushedSegments.add(segment);
+            segments.add(next);
+            segment = next;
+            writePosition = 0;
+            deleteCoveredSegments();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Journal " + directory + " can't start a new segment", e);
+        }
+    }
+
+    private Path segmentPath(int index) {
+        return directory.resolve(String.format("%016x", index) + SEGMENT_SUFFIX);
+    }
+
+    private MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // the mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    /**
+     * Finds the end of the last segment and erases a torn record, so it can't be mistaken for a valid one later.
+     */
+    private int recoverEnd(MappedByteBuffer buffer) {
+        int position = 0;
+        int length;
+        while (position + HEADER_SIZE <= segmentSize && (length = buffer.getInt(position)) > 0) {
+            if (length < HEADER_SIZE || position + length > segmentSize || !hasValidChecksum(buffer, position, length)) {
+                logger.warn("Journal {} ends with a corrupted record at {}, it's discarded", directory, position);
+                for (int p = position; p < segmentSize; p++) {
+                    buffer.put(p, (byte) 0);
+                }
+                buffer.force();
+                break;
+            }
+            position += length;
+        }
+        return position;
+    }
+
+    private static boolean hasValidChecksum(ByteBuffer buffer, int position, int length) {
+        final ByteBuffer record = buffer.duplicate();
+        record.position(position + 8).limit(position + length);
+        final CRC32 crc = new CRC32();
+        crc.update(record);
+        return (int) crc.getValue() == buffer.getInt(position + 4);
+    }
+
+    /**
+     * Receives replayed events.
+     */
+    interface EventConsumer {
+        void accept(long sequenceNr, byte[] event);
+    }
+
+    private final class Flusher extends Thread {
+
+        private Flusher() {
+            super("journal-flusher-" + directory.getFileName());
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                final long target;
+                final List<MappedByteBuffer> flushedSegments;
+                final List<PersistentActor<?, ?>> flushedActors;
+                synchronized (EventJournal.this) {
+                    while (appended == flushed && !closed) {
+                        try {
+                            EventJournal.this.wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    if (appended == flushed) {
+                        return;
+                    }
+                    target = appended;
+                    flushedSegments = new ArrayList<>(unflushedSegments);
+                    flushedSegments.add(segment);
+                    unflushedSegments.clear();
+                    flushedActors = waitingActors;
+                    waitingActors = new ArrayList<>();
+                    for (PersistentActor<?, ?> actor : flushedActors) {
+                        actor.waitingForFlush = false;
+                        actor.flushingSequenceNr = actor.appendedSequenceNr;
+                    }
+                }
+
+                try {
+                    // writes of all actors since the previous flush are forced together
+                    for (MappedByteBuffer flushedSegment : flushedSegments) {
+                        flushedSegment.force();
+                    }
+                } catch (Throwable e) {
+                    logger.error("Journal {} failed to flush events, it's closed: ", directory, e);
+                    final List<PersistentActor<?, ?>> failedActors;
+                    synchronized (EventJournal.this) {
+                        closed = true;
+                        flushFailed = true;
+                        EventJournal.this.notifyAll();
+                        failedActors = waitingActors;
+                        waitingActors = new ArrayList<>();
+                    }
+                    // their events may be lost, so callbacks of the events are never run
+                    for (PersistentActor<?, ?> actor : flushedActors) {
+                        actor.flushFailed();
+                    }
+                    for (PersistentActor<?, ?> actor : failedActors) {
+                        actor.flushFailed();
+                    }
+                    return;
+                }
+                synchronized (EventJournal.this) {
+                    flushed = target;
+                    // snapshots wait for events which precede them
+                    EventJournal.this.notifyAll();
+                }
+                for (PersistentActor<?, ?> actor : flushedActors) {
+                    actor.eventsFlushed();
+                }
+            }
+        }
+    }
+}
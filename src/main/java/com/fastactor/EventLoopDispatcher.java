@@ -0,0 +1,182 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jctools.queues.MessagePassingQueue;
+import org.jctools.queues.MpscUnboundedArrayQueue;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Dispatcher with a fixed set of event loop threads for latency sensitive actors. Each actor is owned by one loop
+ * for its whole life, the loop runs its actors in a tight loop over a local run queue and when there is no work
+ * it waits according its {@link IdleStrategy} instead of handing the thread over to a pool.
+ * <p>
+ * An actor scheduled by an actor of the same loop goes to the local run queue without any synchronization,
+ * an actor scheduled from other threads goes through a wait-free inbox of the loop, so {@link ActorRef#tell(Object)}
+ * can be called from any thread. Pinning of the threads to CPU cores is left to the OS (e.g. taskset or isolcpus).
+ */
+public final class EventLoopDispatcher implements Dispatcher {
+    private static final Logger logger = LogManager.getLogger(EventLoopDispatcher.class);
+    private static final int INBOX_CHUNK_SIZE = 1024;
+    private final EventLoop[] loops;
+
+    /**
+     * Creates a new dispatcher and starts its threads.
+     *
+     * @param threadNamePrefix    prefix of names of threads, the name ends with index of the thread
+     * @param threadsNumber       number of event loop threads
+     * @param idleStrategyFactory creates idle strategy for every thread
+     */
+    public EventLoopDispatcher(String threadNamePrefix, int threadsNumber, Supplier<IdleStrategy> idleStrategyFactory) {
+        logger.debug("Number of event loops is {}", threadsNumber);
+        if (threadsNumber <= 0) {
+            throw new IllegalArgumentException("Number of threads must be positive, but it is " + threadsNumber);
+        }
+
+        loops = new EventLoop[threadsNumber];
+        for (int l = 0; l < threadsNumber; l++) {
+            loops[l] = new EventLoop(this, threadNamePrefix + l, idleStrategyFactory.get());
+        }
+        for (EventLoop loop : loops) {
+            loop.start();
+        }
+    }
+
+    /**
+     * Creates a new dispatcher with {@link IdleStrategy.Backoff} idle strategy and starts its threads.
+     *
+     * @param threadNamePrefix prefix of names of threads, the name ends with index of the thread
+     * @param threadsNumber    number of event loop threads
+     */
+    public EventLoopDispatcher(String threadNamePrefix, int threadsNumber) {
+        this(threadNamePrefix, threadsNumber, IdleStrategy.Backoff::new);
+    }
+
+    @Override
+    public void dispatch(Actor<?> actor, Runnable task) {
+        final EventLoop owner = loops[Math.floorMod(System.identityHashCode(actor), loops.length)];
+        if (Thread.currentThread() == owner) {
+            owner.localTasks.add(task);
+        } else {
+            owner.inbox.offer(task);
+            if (owner.waiting) {
+                LockSupport.unpark(owner);
+            }
+        }
+    }
+
+    @Override
+    public boolean isDispatcherThread() {
+        final Thread thread = Thread.currentThread();
+        return thread instanceof EventLoop && ((EventLoop) thread).dispatcher == this;
+    }
+
+    @Override
+    public boolean awaitQuiescence(long timeout, TimeUnit unit) {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        // two passes seeing all loops idle without any task run in between, a task could be passed between loops
+        // while they are checked one by one
+        long previousExecutedTasks = -1;
+        while (true) {
+            final long executedTasks = executedTasksIfIdle();
+            if (executedTasks >= 0 && executedTasks == previousExecutedTasks) {
+                return true;
+            }
+            if (deadline - System.nanoTime() <= 0) {
+                return false;
+            }
+            previousExecutedTasks = executedTasks;
+            Thread.yield();
+        }
+    }
+
+    private long executedTasksIfIdle() {
+        long executedTasks = 0;
+        for (EventLoop loop : loops) {
+            if (!loop.waiting || !loop.inbox.isEmpty()) {
+                return -1;
+            }
+            executedTasks += loop.executedTasks;
+        }
+        return executedTasks;
+    }
+
+    /**
+     * Stops all threads of the dispatcher, tasks which were not run yet are discarded.
+     */
+    @Override
+    public void shutdown() {
+        for (EventLoop loop : loops) {
+            loop.running = false;
+            LockSupport.unpark(loop);
+        }
+    }
+
+    private static final class EventLoop extends Thread {
+        private final EventLoopDispatcher dispatcher;
+        private final IdleStrategy idleStrategy;
+        private final MessagePassingQueue<Runnable> inbox = new MpscUnboundedArrayQueue<>(INBOX_CHUNK_SIZE);
+        private final ArrayDeque<Runnable> localTasks = new ArrayDeque<>();
+        private final MessagePassingQueue.Consumer<Runnable> localTasksAppender = localTasks::add;
+        private volatile boolean waiting;
+        private volatile boolean running = true;
+        private volatile long executedTasks;
+
+        EventLoop(EventLoopDispatcher dispatcher, String name, IdleStrategy idleStrategy) {
+            super(name);
+            this.dispatcher = dispatcher;
+            this.idleStrategy = idleStrategy;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                if (runTasks() > 0) {
+                    idleStrategy.reset();
+                } else {
+                    // a producer which doesn't see the flag yet must have offered before the inbox is checked
+                    waiting = true;
+                    if (inbox.isEmpty() && running) {
+                        idleStrategy.idle();
+                    }
+                    waiting = false;
+                }
+            }
+        }
+
+        private int runTasks() {
+            inbox.drain(localTasksAppender, INBOX_CHUNK_SIZE);
+            // tasks added during this pass wait for the next one, so the inbox is not starved
+            final int count = localTasks.size();
+            for (int t = 0; t < count; t++) {
+                try {
+                    localTasks.poll().run();
+                } catch (Throwable e) {
+                    logger.error("Unexpected exception in event loop '{}': ", getName(), e);
+                }
+            }
+            if (count > 0) {
+                executedTasks += count;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Reply {@link ActorRef} of a request which is sent to several routees. The first reply is forwarded to the original
+ * requester and the next ones are ignored. Like {@link AskReplyRef} it is not an actor, the reply is forwarded
+ * on the thread of the replying routee. The flag and the reference are one object.
+ *
+ * @param <MessageType> type of the reply
+ */
+class FirstReplyRef<MessageType> implements ActorRef<MessageType> {
+    private static final VarHandle REPLIED;
+    private final ActorRef<MessageType> replyTo;
+    private volatile boolean replied;
+    /**
+     * Pending send of the request to another routee, it's cancelled by the first reply.
+     */
+    volatile Cancellable timer;
+
+    static {
+        try {
+            REPLIED = MethodHandles.lookup().findVarHandle(FirstReplyRef.class, "replied", boolean.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    FirstReplyRef(ActorRef<MessageType> replyTo) {
+        this.replyTo = replyTo;
+    }
+
+    @Override
+    public void tell(MessageType message) {
+        if (!replied && REPLIED.compareAndSet(this, false, true)) {
+            final Cancellable pending = timer;
+            if (pending != null) {
+                pending.cancel();
+            }
+            replyTo.tell(message);
+        }
+    }
+
+    /**
+     * @return true if a reply was already forwarded
+     */
+    boolean isReplied() {
+        return replied;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatcher using work-stealing {@link ForkJoinPool}. Actor scheduled by another actor is forked to the local queue
+ * of the same thread, so groups of actors which communicate frequently together are mapped on the same thread.
+ * Idle threads steal actors from busy ones. It's the default dispatcher of {@link ActorSystem}.
+ */
+public final class ForkJoinDispatcher implements Dispatcher {
+    private static final Logger logger = LogManager.getLogger(ForkJoinDispatcher.class);
+    private final ForkJoinPool pool;
+    private final boolean fifo;
+
+    /**
+     * Creates a new dispatcher with thread pool with the specific number of threads.
+     * <p>
+     * In FIFO mode an actor which is scheduled again is queued behind the actors already waiting for the same thread.
+     * In LIFO mode the last scheduled actor runs first, which improves locality of actors communicating together.
+     * An actor which reached its throughput is queued behind the waiting actors in both modes.
+     *
+     * @param threadNamePrefix     prefix of names of threads, the name ends with index of the thread
+     * @param maximumThreadsNumber number of threads which are shared by assigned actors
+     * @param fifo                 true for FIFO mode, false for LIFO mode
+     */
+    public ForkJoinDispatcher(String threadNamePrefix, int maximumThreadsNumber, boolean fifo) {
+        logger.debug("Maximum number of thread is {}, FIFO mode is {}", maximumThreadsNumber, fifo);
+
+        final ForkJoinWorkerThreadFactory threadFactory = new ForkJoinWorkerThreadFactory() {
+            @Override
+            public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                final ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                worker.setName(threadNamePrefix + worker.getPoolIndex());
+                return worker;
+            }
+        };
+
+        this.fifo = fifo;
+        pool = new ForkJoinPool(maximumThreadsNumber, threadFactory,
+                null, fifo,
+                maximumThreadsNumber,
+                maximumThreadsNumber,
+                1, null, 60, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Creates a new dispatcher in LIFO mode with thread pool with the specific number of threads.
+     *
+     * @param threadNamePrefix     prefix of names of threads, the name ends with index of the thread
+     * @param maximumThreadsNumber number of threads which are shared by assigned actors
+     */
+    public ForkJoinDispatcher(String threadNamePrefix, int maximumThreadsNumber) {
+        this(threadNamePrefix, maximumThreadsNumber, false);
+    }
+
+    @Override
+    public void dispatch(Actor<?> actor, Runnable task) {
+        if (ForkJoinTask.getPool() == pool) {
+            ForkJoinTask.adapt(task).fork();
+        } else {
+            pool.execute(task);
+        }
+    }
+
+    /**
+     * Forking on the worker would put the actor on top of its local queue, so in LIFO mode it would run again
+     * right away. Tasks forked during the run are moved on top of the actor instead, and one task submitted from
+     * outside of the pool goes before it too, so a busy local queue doesn't starve submissions.
+     */
+    @Override
+    public void redispatch(Actor<?> actor, Runnable task) {
+        if (ForkJoinTask.getPool() == pool) {
+            LocalQueue.requeue(ForkJoinTask.adapt(task), fifo);
+        } else {
+            pool.execute(task);
+        }
+    }
+
+    @Override
+    public boolean isDispatcherThread() {
+        return ForkJoinTask.getPool() == pool;
+    }
+
+    @Override
+    public boolean awaitQuiescence(long timeout, TimeUnit unit) {
+        return pool.awaitQuiescence(timeout, unit);
+    }
+
+    /**
+     * Already dispatched tasks are run, then the threads terminate.
+     */
+    @Override
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Never instantiated, it gives access to the local queue of the current worker.
+     */
+    private abstract static class LocalQueue extends ForkJoinTask<Void> {
+        private static final long serialVersionUID = 1L;
+
+        static void requeue(ForkJoinTask<?> yielded, boolean fifo) {
+            final ForkJoinTask<?> submission = pollSubmission();
+            if (fifo) {
+                // the local queue is consumed from the other end, so the forked task is already the last one
+                if (submission != null) {
+                    submission.fork();
+                }
+                yielded.fork();
+                return;
+            }
+            final ArrayDeque<ForkJoinTask<?>> local = new ArrayDeque<>();
+            ForkJoinTask<?> next;
+            while ((next = pollNextLocalTask()) != null) {
+                local.push(next);
+            }
+            yielded.fork();
+            if (submission != null) {
+                submission.fork();
+            }
+            // pushed back in reverse order, so they are run in their original order
+            for (ForkJoinTask<?> localTask : local) {
+                localTask.fork();
+            }
+        }
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jctools.queues.MessagePassingQueue;
+import org.jctools.queues.MpscUnboundedArrayQueue;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timing wheel (G. Varghese, T. Lauck) which sends scheduled messages by {@link ActorRef#tell(Object)}.
+ * <p>
+ * Time is split into ticks and a timeout is stored in the bucket of the wheel which covers its deadline, together
+ * with the number of wheel rotations left. Scheduling and cancelling are O(1) and wait-free, new and cancelled
+ * timeouts go through MPSC queues and only the timer thread touches the buckets. A message is sent at most one tick
+ * after its deadline. Periodic timeouts are reused, so they don't allocate after they are scheduled.
+ * <p>
+ * The timer thread is started by the first scheduled message and runs until {@link #stop()}.
+ */
+final class HashedWheelTimer {
+    private static final Logger logger = LogManager.getLogger(HashedWheelTimer.class);
+    private static final int QUEUE_CHUNK_SIZE = 1024;
+    private static final int MAX_TRANSFERRED_TIMEOUTS_PER_TICK = 100_000;
+    private final String threadName;
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final MessagePassingQueue<Timeout<?>> pendingTimeouts = new MpscUnboundedArrayQueue<>(QUEUE_CHUNK_SIZE);
+    private final MessagePassingQueue<Timeout<?>> cancelledTimeouts = new MpscUnboundedArrayQueue<>(QUEUE_CHUNK_SIZE);
+    private volatile Worker worker;
+    private volatile boolean stopped;
+    private long startTime;
+
+    /**
+     * @param threadName   name of the timer thread
+     * @param tickDuration resolution of the timer
+     * @param unit         unit for tickDuration
+     * @param wheelSize    number of buckets, it is rounded up to the next power of two
+     */
+    HashedWheelTimer(String threadName, long tickDuration, TimeUnit unit, int wheelSize) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("Tick duration must be positive, but it is " + tickDuration);
+        }
+        if (wheelSize <= 0 || wheelSize > 1 << 30) {
+            throw new IllegalArgumentException("Wheel size must be in range (0, 2^30], but it is " + wheelSize);
+        }
+
+        this.threadName = threadName;
+        this.tickNanos = unit.toNanos(tickDuration);
+        int normalizedWheelSize = 1;
+        while (normalizedWheelSize < wheelSize) {
+            normalizedWheelSize <<= 1;
+        }
+        this.wheel = new Bucket[normalizedWheelSize];
+        for (int b = 0; b < wheel.length; b++) {
+            wheel[b] = new Bucket();
+        }
+        this.mask = wheel.length - 1;
+    }
+
+    /**
+     * @param periodNanos period of the message, 0 for a single message
+     */
+    <T> Timeout<T> schedule(ActorRef<T> target, T message, long delayNanos, long periodNanos) {
+        if (target == null) {
+            throw new IllegalArgumentException("Target of a scheduled message must be defined");
+        }
+        if (delayNanos < 0) {
+            throw new IllegalArgumentException("Delay must not be negative, but it is " + delayNanos + " ns");
+        }
+        if (periodNanos < 0) {
+            throw new IllegalArgumentException("Period must not be negative, but it is " + periodNanos + " ns");
+        }
+
+        startIfNeeded();
+        if (stopped) {
+            throw new IllegalStateException("Timer '" + threadName + "' is stopped");
+        }
+        // deadlines are relative to the start, so they don't overflow for ~292 years
+        final long deadline = Math.max(0, System.nanoTime() - startTime) + delayNanos;
+        final Timeout<T> timeout = new Timeout<>(this, target, message, deadline < 0 ? Long.MAX_VALUE : deadline,
+                periodNanos);
+        pendingTimeouts.offer(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stops the timer thread, messages which were not sent yet are discarded.
+     */
+    void stop() {
+        synchronized (this) {
+            stopped = true;
+        }
+        Worker currentWorker = worker;
+        if (currentWorker != null) {
+            LockSupport.unpark(currentWorker);
+        }
+    }
+
+    int getWheelSize() {
+        return wheel.length;
+    }
+
+    private void startIfNeeded() {
+        if (worker == null) {
+            synchronized (this) {
+                if (worker == null && !stopped) {
+                    startTime = System.nanoTime();
+                    Worker newWorker = new Worker();
+                    newWorker.start();
+                    worker = newWorker;
+                }
+            }
+        }
+    }
+
+    private final class Worker extends Thread {
+        private long tick;
+
+        private Worker() {
+            super(threadName);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                waitForNextTick();
+                if (stopped) {
+                    return;
+                }
+                processCancelledTimeouts();
+                transferPendingTimeouts();
+                wheel[(int) (tick & mask)].expireTimeouts();
+                tick++;
+            }
+        }
+
+        private void waitForNextTick() {
+            final long tickDeadline = tickNanos * (tick + 1);
+            long now;
+            while ((now = System.nanoTime() - startTime) < tickDeadline && !stopped) {
+                LockSupport.parkNanos(this, tickDeadline - now);
+            }
+        }
+
+        private void processCancelledTimeouts() {
+            Timeout<?> timeout;
+            while ((timeout = cancelledTimeouts.poll()) != null) {
+                if (timeout.bucket != null) {
+                    timeout.bucket.remove(timeout);
+                }
+            }
+        }
+
+        private void transferPendingTimeouts() {
+            // the limit prevents starving of the wheel by producers which never stop
+            for (int t = 0; t < MAX_TRANSFERRED_TIMEOUTS_PER_TICK; t++) {
+                final Timeout<?> timeout = pendingTimeouts.poll();
+                if (timeout == null) {
+                    return;
+                }
+                if (timeout.state != Timeout.PENDING) {
+                    continue;
+                }
+                addToWheel(timeout);
+            }
+        }
+
+        private void addToWheel(Timeout<?> timeout) {
+            final long calculatedTick = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (calculatedTick - tick) / wheel.length;
+            // a deadline in the past is expired by the current tick
+            final long targetTick = Math.max(calculatedTick, tick);
+            wheel[(int) (targetTick & mask)].add(timeout);
+        }
+    }
+
+    private final class Bucket {
+        private Timeout<?> head;
+        private Timeout<?> tail;
+
+        void add(Timeout<?> timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void remove(Timeout<?> timeout) {
+            final Timeout<?> next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (next != null) {
+                next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        void expireTimeouts() {
+            Timeout<?> timeout = head;
+            while (timeout != null) {
+                final Timeout<?> next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    timeout.expire();
+                    if (timeout.periodNanos > 0 && timeout.state == Timeout.PENDING) {
+                        timeout.deadline += timeout.periodNanos;
+                        // rescheduled timeout is transferred by the next tick, so this loop always terminates
+                        pendingTimeouts.offer(timeout);
+                    }
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+    }
+
+    static final class Timeout<T> implements Cancellable {
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+        private static final VarHandle STATE;
+        private final HashedWheelTimer timer;
+        private final ActorRef<T> target;
+        private final T message;
+        private final long periodNanos;
+        private volatile int state = PENDING;
+        // fields below are accessed only by the timer thread
+        private long deadline;
+        private long remainingRounds;
+        private Timeout<?> next;
+        private Timeout<?> prev;
+        private Bucket bucket;
+
+        static {
+            try {
+                STATE = MethodHandles.lookup().findVarHandle(Timeout.class, "state", int.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private Timeout(HashedWheelTimer timer, ActorRef<T> target, T message, long deadline, long periodNanos) {
+            this.timer = timer;
+            this.target = target;
+            this.message = message;
+            this.deadline = deadline;
+            this.periodNanos = periodNanos;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, PENDING, CANCELLED)) {
+                return false;
+            }
+            timer.cancelledTimeouts.offer(this);
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        @Override
+        public boolean isPending() {
+            return state == PENDING;
+        }
+
+        private void expire() {
+            if (periodNanos == 0 && !STATE.compareAndSet(this, PENDING, EXPIRED)) {
+                return;
+            }
+            if (periodNanos > 0 && state != PENDING) {
+                return;
+            }
+            try {
+                target.tell(message);
+            } catch (Throwable e) {
+                logger.error("Scheduled message can't be sent: ", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of non-negative values with buckets of exponentially growing size (powers of two).
+ * Recording is allocation free and constant time, percentiles are approximated by the upper bound of a bucket,
+ * so they are at most twice bigger than the real value.
+ */
+public abstract class Histogram {
+    static final int BUCKETS = 40;
+
+    private Histogram() {
+    }
+
+    abstract void record(long value);
+
+    abstract long bucketCount(int bucket);
+
+    /**
+     * @return sum of all recorded values
+     */
+    public abstract long getSum();
+
+    /**
+     * @return number of recorded values
+     */
+    public long getCount() {
+        long count = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            count += bucketCount(bucket);
+        }
+        return count;
+    }
+
+    /**
+     * @return average of recorded values, 0 if nothing was recorded
+     */
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) getSum() / count;
+    }
+
+    /**
+     * @param percentile requested percentile from interval (0, 100]
+     * @return approximate value which is greater than or equal to the given percentage of recorded values
+     */
+    public long getPercentile(double percentile) {
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be from interval (0, 100], but it is " + percentile);
+        }
+
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            counts[bucket] = bucketCount(bucket);
+            count += counts[bucket];
+        }
+
+        long threshold = (long) Math.ceil(count * percentile / 100);
+        long cumulative = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            cumulative += counts[bucket];
+            if (cumulative >= threshold && cumulative > 0) {
+                return upperBound(bucket);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return approximate median of recorded values
+     */
+    public long getMedian() {
+        return getPercentile(50);
+    }
+
+    /**
+     * @return approximate 90th percentile of recorded values
+     */
+    public long getPercentile90() {
+        return getPercentile(90);
+    }
+
+    /**
+     * @return approximate 99th percentile of recorded values
+     */
+    public long getPercentile99() {
+        return getPercentile(99);
+    }
+
+    /**
+     * @return approximate 99.9th percentile of recorded values
+     */
+    public long getPercentile999() {
+        return getPercentile(99.9);
+    }
+
+    /**
+     * @return approximate maximum of recorded values
+     */
+    public long getMax() {
+        return getPercentile(100);
+    }
+
+    static int bucketOf(long value) {
+        return Math.min(64 - Long.numberOfLeadingZeros(Math.max(value, 0)), BUCKETS - 1);
+    }
+
+    static long upperBound(int bucket) {
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    /**
+     * Histogram which is updated by many threads at once, its buckets are striped counters.
+     */
+    static final class Concurrent extends Histogram {
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+        private final LongAdder sum = new LongAdder();
+
+        Concurrent() {
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                buckets[bucket] = new LongAdder();
+            }
+        }
+
+        @Override
+        void record(long value) {
+            buckets[bucketOf(value)].increment();
+            sum.add(value);
+        }
+
+        @Override
+        long bucketCount(int bucket) {
+            return buckets[bucket].sum();
+        }
+
+        @Override
+        public long getSum() {
+            return sum.sum();
+        }
+    }
+
+    /**
+     * Histogram which is updated by one thread at a time (e.g. by an actor), so it doesn't need atomic updates.
+     */
+    static final class SingleWriter extends Histogram {
+        private static final int SUM = BUCKETS;
+        // buckets followed by sum
+        private final AtomicLongArray values = new AtomicLongArray(BUCKETS + 1);
+
+        @Override
+        void record(long value) {
+            int bucket = bucketOf(value);
+            values.lazySet(bucket, values.get(bucket) + 1);
+            values.lazySet(SUM, values.get(SUM) + value);
+        }
+
+        @Override
+        long bucketCount(int bucket) {
+            return values.get(bucket);
+        }
+
+        @Override
+        public long getSum() {
+            return values.get(SUM);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Strategy of a thread which has no work, used by {@link EventLoopDispatcher}. A strategy is stateful, so every thread
+ * needs its own instance.
+ */
+public interface IdleStrategy {
+
+    /**
+     * Called when the thread found no work in its last pass.
+     */
+    void idle();
+
+    /**
+     * Called when the thread found some work, so the next idle period starts from the beginning.
+     */
+    void reset();
+
+    /**
+     * Busy spins, the lowest latency for the price of one fully used CPU core per thread.
+     */
+    class BusySpin implements IdleStrategy {
+        @Override
+        public void idle() {
+            Thread.onSpinWait();
+        }
+
+        @Override
+        public void reset() {
+        }
+    }
+
+    /**
+     * Yields the CPU to other threads, but the thread is still always runnable.
+     */
+    class Yielding implements IdleStrategy {
+        @Override
+        public void idle() {
+            Thread.yield();
+        }
+
+        @Override
+        public void reset() {
+        }
+    }
+
+    /**
+     * Spins first, then yields and then parks the thread for progressively longer time.
+     */
+    class Backoff implements IdleStrategy {
+        private final long maxSpins;
+        private final long maxYields;
+        private final long minParkNanos;
+        private final long maxParkNanos;
+        private long spins;
+        private long yields;
+        private long parkNanos;
+
+        /**
+         * @param maxSpins     number of busy spins before yielding
+         * @param maxYields    number of yields before parking
+         * @param minParkNanos length of the first park
+         * @param maxParkNanos max length of a park
+         */
+        public Backoff(long maxSpins, long maxYields, long minParkNanos, long maxParkNanos) {
+            if (maxSpins < 0 || maxYields < 0 || minParkNanos <= 0 || maxParkNanos < minParkNanos) {
+                throw new IllegalArgumentException("Invalid backoff: spins " + maxSpins + ", yields " + maxYields
+                        + ", park nanos " + minParkNanos + " - " + maxParkNanos);
+            }
+
+            this.maxSpins = maxSpins;
+            this.maxYields = maxYields;
+            this.minParkNanos = minParkNanos;
+            this.maxParkNanos = maxParkNanos;
+            reset();
+        }
+
+        /**
+         * Creates backoff with 100 spins, 10 yields and parks from 1 microsecond to 1 millisecond.
+         */
+        public Backoff() {
+            this(100, 10, TimeUnit.MICROSECONDS.toNanos(1), TimeUnit.MILLISECONDS.toNanos(1));
+        }
+
+        @Override
+        public void idle() {
+            if (spins < maxSpins) {
+                spins++;
+                Thread.onSpinWait();
+            } else if (yields < maxYields) {
+                yields++;
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(parkNanos);
+                parkNanos = Math.min(parkNanos << 1, maxParkNanos);
+            }
+        }
+
+        @Override
+        public void reset() {
+            spins = 0;
+            yields = 0;
+            parkNanos = minParkNanos;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+/**
+ * {@link ActorRef} of a {@link IntActor}, it sends int messages without boxing.
+ * The ActorRef of every IntActor implements it, see {@link ActorSystem#actorOf(IntActor)}.
+ */
+public interface IntActorRef extends ActorRef<Integer> {
+
+    /**
+     * Sends the int message, i.e. fire-and-forget semantics. The message is boxed only when it isn't enqueued
+     * at once, e.g. when the mailbox is full and it's handled according to {@link OverflowStrategy}.
+     *
+     * @param message message which is sent
+     */
+    void tell(int message);
+}
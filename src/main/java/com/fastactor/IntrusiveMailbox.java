@@ -0,0 +1,167 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Unbounded wait-free MPSC mailbox which links messages by their own {@link Envelope#next} field
+ * (<a href="http://www.1024cores.net/home/lock-free-algorithms/queues/intrusive-mpsc-node-based-queue">intrusive
+ * MPSC node-based queue from D. Vyukov</a>), so unlike {@link org.jctools.queues.MpscLinkedQueue} sending
+ * doesn't allocate a node. It can be passed to {@link Actor#Actor(String, java.util.function.Supplier)}:
+ * <pre>{@code
+ * super("Counter", IntrusiveMailbox::new);
+ * }</pre>
+ * Offer is one atomic exchange, poll and peek may be called only by the consumer, size walks the whole queue.
+ * A message which is being enqueued by a preempted producer is not visible until the producer links it.
+ *
+ * @param <MessageType> base type of actor messages
+ */
+public final class IntrusiveMailbox<MessageType extends Envelope> extends AbstractQueue<MessageType> {
+    private static final VarHandle HEAD;
+    private static final VarHandle NEXT;
+
+    private final Envelope stub = new Stub();
+    // the last enqueued message, written by producers
+    private volatile Envelope head = stub;
+    // the next message to poll, written only by the consumer
+    private volatile Envelope tail = stub;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            HEAD = lookup.findVarHandle(IntrusiveMailbox.class, "head", Envelope.class);
+            NEXT = lookup.findVarHandle(Envelope.class, "next", Envelope.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static final class Stub extends Envelope {
+    }
+
+    @Override
+    public boolean offer(MessageType message) {
+        if (message == null) {
+            throw new NullPointerException();
+        }
+        push(message);
+        return true;
+    }
+
+    private void push(Envelope envelope) {
+        NEXT.setRelease(envelope, null);
+        final Envelope previous = (Envelope) HEAD.getAndSet(this, envelope);
+        previous.next = envelope;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public MessageType poll() {
+        Envelope tail = this.tail;
+        Envelope next = tail.next;
+        if (tail == stub) {
+            if (next == null) {
+                return null;
+            }
+            this.tail = next;
+            tail = next;
+            next = next.next;
+        }
+        if (next != null) {
+            this.tail = next;
+            NEXT.setRelease(tail, null);
+            return (MessageType) tail;
+        }
+        if (tail != head) {
+            // a producer swapped the head but it didn't link the message yet
+            return null;
+        }
+        push(stub);
+        next = tail.next;
+        if (next != null) {
+            this.tail = next;
+            NEXT.setRelease(tail, null);
+            return (MessageType) tail;
+        }
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public MessageType peek() {
+        Envelope tail = this.tail;
+        if (tail == stub) {
+            tail = tail.next;
+        }
+        return (MessageType) tail;
+    }
+
+    /**
+     * The mailbox is empty only when the stub is both the tail and the head. Unless the tail is the stub, it's
+     * a message which wasn't polled yet, and a message which is being enqueued moves the head away from the stub,
+     * so an actor is never left unscheduled.
+     */
+    @Override
+    public boolean isEmpty() {
+        return tail == stub && head == stub;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Envelope envelope = tail; envelope != null; envelope = envelope.next) {
+            if (envelope != stub) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Weakly consistent iterator for inspection (like {@link #contains} or {@link #toString}), it can be used by any
+     * thread, but it stops early when it reaches a message which is being polled. Mailboxes are consumed only by
+     * poll, so the iterator doesn't support removal, like iterators of JCTools queues.
+     */
+    @Override
+    public Iterator<MessageType> iterator() {
+        return new Iterator<>() {
+            private Envelope next = skipStub(tail);
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public MessageType next() {
+                final Envelope envelope = next;
+                if (envelope == null) {
+                    throw new NoSuchElementException();
+                }
+                next = skipStub(envelope.next);
+                return (MessageType) envelope;
+            }
+        };
+    }
+
+    private Envelope skipStub(Envelope envelope) {
+        return envelope == stub ? envelope.next : envelope;
+    }
+}
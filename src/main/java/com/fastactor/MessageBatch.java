@@ -0,0 +1,67 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Read-only view of messages which are processed together by {@link BatchActor}.
+ * <p>
+ * The same instance is reused for all batches of the actor, so it's valid only during
+ * {@link BatchActor#onMessages(MessageBatch)}. Messages must be copied if they are needed later.
+ *
+ * @param <MessageType> base type of actor messages
+ */
+public final class MessageBatch<MessageType> extends AbstractList<MessageType> implements RandomAccess {
+    private final Object[] messages;
+    private int size;
+
+    MessageBatch(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive, but it is " + capacity);
+        }
+        this.messages = new Object[capacity];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public MessageType get(int index) {
+        Objects.checkIndex(index, size);
+        return (MessageType) messages[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    int capacity() {
+        return messages.length;
+    }
+
+    void append(MessageType message) {
+        messages[size++] = message;
+    }
+
+    /**
+     * Releases references to processed messages, so they can be garbage collected.
+     */
+    void reset() {
+        Arrays.fill(messages, 0, size, null);
+        size = 0;
+    }
+}
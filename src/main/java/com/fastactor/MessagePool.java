@@ -0,0 +1,104 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Pool of messages with a free list per thread, so acquiring and recycling don't need any synchronization.
+ * Messages are recycled by the thread of the receiving actor, so they migrate between free lists of dispatcher
+ * threads; a free list keeps at most {@code maxFreePerThread} messages and the rest is left to the garbage collector.
+ * A pool can be shared by many actors, typically there is one static pool per message class.
+ * <pre>{@code
+ * private static final MessagePool<Ping> PINGS = new MessagePool<>(Ping::new);
+ * ...
+ * Ping ping = PINGS.acquire();
+ * ping.value = value;
+ * pong.tell(ping);
+ * }</pre>
+ *
+ * @param <MessageType> type of pooled messages
+ */
+public final class MessagePool<MessageType extends PooledMessage> {
+    static final int DEFAULT_MAX_FREE_PER_THREAD = 1024;
+
+    private final Supplier<MessageType> factory;
+    private final int maxFreePerThread;
+    private final ThreadLocal<FreeList> freeLists = ThreadLocal.withInitial(FreeList::new);
+
+    /**
+     * Creates a pool which keeps at most 1024 free messages per thread.
+     *
+     * @param factory creates a new message when the free list of the thread is empty
+     */
+    public MessagePool(Supplier<MessageType> factory) {
+        this(factory, DEFAULT_MAX_FREE_PER_THREAD);
+    }
+
+    /**
+     * @param factory          creates a new message when the free list of the thread is empty
+     * @param maxFreePerThread max number of free messages kept by a thread
+     */
+    public MessagePool(Supplier<MessageType> factory, int maxFreePerThread) {
+        if (maxFreePerThread <= 0) {
+            throw new IllegalArgumentException("Max number of free messages must be positive, but it is "
+                    + maxFreePerThread);
+        }
+        this.factory = factory;
+        this.maxFreePerThread = maxFreePerThread;
+    }
+
+    /**
+     * @return message owned by the caller, a recycled one if the thread has any
+     */
+    @SuppressWarnings("unchecked")
+    public MessageType acquire() {
+        MessageType message = (MessageType) freeLists.get().pop();
+        if (message == null) {
+            message = factory.get();
+            message.pool = this;
+        }
+        message.acquired();
+        return message;
+    }
+
+    void release(PooledMessage message) {
+        freeLists.get().push(message, maxFreePerThread);
+    }
+
+    private static final class FreeList {
+        private PooledMessage[] messages = new PooledMessage[16];
+        private int size;
+
+        private PooledMessage pop() {
+            if (size == 0) {
+                return null;
+            }
+            final PooledMessage message = messages[--size];
+            messages[size] = null;
+            return message;
+        }
+
+        private void push(PooledMessage message, int maxSize) {
+            if (size >= maxSize) {
+                return;
+            }
+            if (size == messages.length) {
+                messages = Arrays.copyOf(messages, Math.min(size * 2, maxSize));
+            }
+            messages[size++] = message;
+        }
+    }
+}
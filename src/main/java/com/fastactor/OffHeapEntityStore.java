@@ -0,0 +1,241 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Entity store which appends states into a few large direct buffers (slabs) outside of the Java heap. The heap keeps
+ * only an index entry per key (the key, a map entry and the boxed address of the state), so a long tail of passivated
+ * entities doesn't cost an object or a native allocation per state and the garbage collector doesn't trace the states.
+ * The slabs count towards {@code -XX:MaxDirectMemorySize}.
+ * <p>
+ * A replaced or removed state leaves a hole in its slab. A slab without live states is released, and when holes
+ * take more space than live states, live states of the older slabs are copied to the current one, so the memory
+ * is proportional to the live states. Operations are short copies under one lock. States are lost when the JVM
+ * exits.
+ *
+ * @param <KeyType> type of keys of entities
+ */
+public final class OffHeapEntityStore<KeyType> implements EntityStore<KeyType> {
+    static final int DEFAULT_SLAB_SIZE = 16 << 20;
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES;
+    private final int slabSize;
+    // address of a state is the index of its slab in the upper and the offset of its record in the lower 32 bits
+    private final Map<KeyType, Long> index = new HashMap<>();
+    private final List<Slab> slabs = new ArrayList<>();
+    // indexes of released slabs are reused, so addresses and the list stay bounded by the most slabs allocated at once
+    private final ArrayDeque<Integer> freeSlabIndexes = new ArrayDeque<>();
+    private Slab current;
+    private int currentIndex = -1;
+    private long size;
+    private long holes;
+
+    /**
+     * Creates a store with slabs of 16 MB.
+     */
+    public OffHeapEntityStore() {
+        this(DEFAULT_SLAB_SIZE);
+    }
+
+    /**
+     * @param slabSize size of a slab in bytes, it limits also the size of a state
+     */
+    public OffHeapEntityStore(int slabSize) {
+        if (slabSize <= RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("Slab size must be greater than " + RECORD_HEADER_SIZE
+                    + ", but it is " + slabSize);
+        }
+        this.slabSize = slabSize;
+    }
+
+    @Override
+    public synchronized void save(KeyType key, byte[] state) {
+        if (state.length > slabSize - RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("State of " + state.length + " bytes doesn't fit into slab of "
+                    + slabSize + " bytes");
+        }
+        final Long previous = index.put(key, append(state, 0, state.length));
+        size += state.length;
+        if (previous != null) {
+            release(previous);
+        }
+        compactIfNeeded();
+    }
+
+    @Override
+    public synchronized byte[] load(KeyType key) {
+        final Long address = index.get(key);
+        if (address == null) {
+            return null;
+        }
+        final ByteBuffer buffer = slabs.get(slabIndex(address)).buffer;
+        final int offset = offset(address);
+        final byte[] state = new byte[buffer.getInt(offset)];
+        read(buffer, offset, state);
+        return state;
+    }
+
+    @Override
+    public synchronized void remove(KeyType key) {
+        final Long previous = index.remove(key);
+        if (previous != null) {
+            release(previous);
+            compactIfNeeded();
+        }
+    }
+
+    /**
+     * @return number of stored states
+     */
+    public synchronized int getStatesNumber() {
+        return index.size();
+    }
+
+    /**
+     * @return total size of stored states in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * @return number of allocated slabs
+     */
+    public synchronized int getSlabsNumber() {
+        int slabsNumber = 0;
+        for (Slab slab : slabs) {
+            if (slab != null) {
+                slabsNumber++;
+            }
+        }
+        return slabsNumber;
+    }
+
+    /**
+     * @return number of allocated and released slabs in the index of slabs
+     */
+    synchronized int getSlabIndexesNumber() {
+        return slabs.size();
+    }
+
+    private long append(byte[] state, int from, int length) {
+        final int recordSize = RECORD_HEADER_SIZE + length;
+        if (current == null || current.used + recordSize > slabSize) {
+            current = new Slab(ByteBuffer.allocateDirect(slabSize));
+            final Integer freeIndex = freeSlabIndexes.poll();
+            if (freeIndex != null) {
+                currentIndex = freeIndex;
+                slabs.set(currentIndex, current);
+            } else {
+                currentIndex = slabs.size();
+                slabs.add(current);
+            }
+        }
+        final int offset = current.used;
+        final ByteBuffer record = current.buffer.duplicate();
+        record.position(offset);
+        record.putInt(length).put(state, from, length);
+        current.used += recordSize;
+        current.live += recordSize;
+        return (long) currentIndex << 32 | offset;
+    }
+
+    private void release(long address) {
+        final int slabIndex = slabIndex(address);
+        final Slab slab = slabs.get(slabIndex);
+        final int length = slab.buffer.getInt(offset(address));
+        final int recordSize = RECORD_HEADER_SIZE + length;
+        size -= length;
+        slab.live -= recordSize;
+        if (slab.live == 0 && slab != current) {
+            holes -= slab.used - recordSize;
+            releaseSlab(slabIndex);
+        } else {
+            holes += recordSize;
+        }
+    }
+
+    /**
+     * Copies live states out of older slabs with holes, it's amortized by the holes which triggered it.
+     */
+    private void compactIfNeeded() {
+        if (holes <= slabSize || holes <= size) {
+            return;
+        }
+        final boolean[] compacted = new boolean[slabs.size()];
+        for (int s = 0; s < compacted.length; s++) {
+            final Slab slab = slabs.get(s);
+            compacted[s] = slab != null && slab != current && slab.live < slab.used;
+        }
+        byte[] copy = new byte[0];
+        for (Map.Entry<KeyType, Long> entry : index.entrySet()) {
+            final long address = entry.getValue();
+            final int slabIndex = slabIndex(address);
+            if (slabIndex < compacted.length && compacted[slabIndex]) {
+                final ByteBuffer buffer = slabs.get(slabIndex).buffer;
+                final int length = buffer.getInt(offset(address));
+                if (copy.length < length) {
+                    copy = new byte[length];
+                }
+                read(buffer, offset(address), copy);
+                entry.setValue(append(copy, 0, length));
+            }
+        }
+        for (int s = 0; s < compacted.length; s++) {
+            if (compacted[s]) {
+                final Slab slab = slabs.get(s);
+                holes -= slab.used - slab.live;
+                releaseSlab(s);
+            }
+        }
+    }
+
+    private void releaseSlab(int slabIndex) {
+        slabs.set(slabIndex, null);
+        freeSlabIndexes.push(slabIndex);
+    }
+
+    /**
+     * Reads the state of the record into the beginning of the array.
+     */
+    private static void read(ByteBuffer buffer, int offset, byte[] state) {
+        final ByteBuffer record = buffer.duplicate();
+        record.position(offset);
+        record.get(state, 0, record.getInt());
+    }
+
+    private static int slabIndex(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    private static final class Slab {
+        private final ByteBuffer buffer;
+        private int used;
+        private int live;
+
+        private Slab(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+/**
+ * Defines what happens with a message which is sent to an actor with full bounded mailbox.
+ * <p>
+ * {@link ActorRef#tryTell(Object)} never waits and never throws, it only reports whether the message was enqueued.
+ */
+public enum OverflowStrategy {
+    /**
+     * The new message is dropped.
+     */
+    DROP_NEWEST,
+    /**
+     * The oldest messages are dropped until the new message fits into the mailbox.
+     * The mailbox must support multiple consumers, e.g. {@link org.jctools.queues.MpmcArrayQueue}.
+     */
+    DROP_OLDEST,
+    /**
+     * {@link ActorRef#tell(Object)} throws {@link IllegalStateException}.
+     */
+    FAIL,
+    /**
+     * {@link ActorRef#tell(Object)} parks the sender until there is free space in the mailbox.
+     * Threads of the actor system can't wait for each other, so they fail the same way as {@link #FAIL}.
+     */
+    BLOCK
+}
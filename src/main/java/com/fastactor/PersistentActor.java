@@ -0,0 +1,280 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+/**
+ * Event-sourced actor whose state survives restarts. Its state is changed only by events: {@link #persist} appends
+ * an event to the {@link EventJournal} and applies it by {@link #onEvent(Object)}. Before {@link #preStart()},
+ * the actor restores its last snapshot and replays the newer events of its persistence id.
+ * <pre>{@code
+ * protected void onMessage(Deposit deposit) {
+ *     persist(new Deposited(deposit.amount), event -> deposit.replyTo.tell(balance));
+ * }
+ *
+ * protected void onEvent(Deposited event) {
+ *     balance += event.amount;
+ * }
+ * }</pre>
+ * The event is applied immediately, so the next messages see it, but the callback of persist is run only after
+ * the event is on the disk. Effects visible outside of the actor, e.g. replies, belong to the callback. Callbacks
+ * are run in the order of their events, before other messages waiting in the mailbox. When the journal fails
+ * to flush, actors with unconfirmed events are stopped and their callbacks are never run.
+ * <p>
+ * When the snapshot interval is set, the actor implements {@link SnapshotCodec} and the state returned by
+ * {@link SnapshotCodec#saveSnapshot()} is stored after every interval of events, synchronously. Only one actor
+ * may use a persistence id at a time.
+ *
+ * @param <MessageType> base type of actor messages
+ * @param <EventType>   base type of events
+ */
+public abstract class PersistentActor<MessageType, EventType> extends Actor<MessageType> {
+    private static final Logger logger = LogManager.getLogger(PersistentActor.class);
+    private final String persistenceId;
+    private final byte[] persistenceIdBytes;
+    private final EventJournal journal;
+    private final int snapshotInterval;
+    private final SystemTask runCallbacks = this::runCallbacks;
+    private ArrayDeque<PendingEvent<EventType>> pendingEvents;
+    private long sequenceNr;
+    private long snapshotSequenceNr;
+    // guarded by the journal
+    long appendedSequenceNr;
+    boolean waitingForFlush;
+    boolean recoveryPositionKnown;
+    // written and read by the flusher thread of the journal
+    long flushingSequenceNr;
+    private volatile long flushedSequenceNr;
+
+    /**
+     * Creates an actor without snapshots, its name is the persistence id.
+     *
+     * @param persistenceId identity of the actor in the journal
+     * @param journal       journal of events
+     */
+    public PersistentActor(String persistenceId, EventJournal journal) {
+        this(persistenceId, journal, 0);
+    }
+
+    /**
+     * Creates an actor whose name is the persistence id.
+     *
+     * @param persistenceId    identity of the actor in the journal
+     * @param journal          journal of events
+     * @param snapshotInterval number of events between snapshots, 0 disables snapshots, the actor must implement
+     *                         {@link SnapshotCodec} when it's positive
+     */
+    public PersistentActor(String persistenceId, EventJournal journal, int snapshotInterval) {
+        super(persistenceId);
+        if (snapshotInterval < 0) {
+            throw new IllegalArgumentException("Snapshot interval must not be negative, but it is "
+                    + snapshotInterval);
+        }
+        if (snapshotInterval > 0 && !(this instanceof SnapshotCodec)) {
+            throw new IllegalArgumentException("Actor '" + persistenceId + "' with a snapshot interval must implement "
+                    + SnapshotCodec.class.getName());
+        }
+        this.persistenceId = persistenceId;
+        this.persistenceIdBytes = persistenceId.getBytes(StandardCharsets.UTF_8);
+        if (persistenceIdBytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Persistence id is longer than " + Short.MAX_VALUE + " bytes");
+        }
+        this.journal = journal;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * Applies the event to the state of the actor, it's called by {@link #persist} and by the replay.
+     *
+     * @param event persisted event
+     */
+    protected abstract void onEvent(EventType event);
+
+    /**
+     * @param event event which is being persisted
+     * @return serialized event
+     */
+    protected abstract byte[] serializeEvent(EventType event);
+
+    /**
+     * @param bytes serialized event
+     * @return event which is being replayed
+     */
+    protected abstract EventType deserializeEvent(byte[] bytes);
+
+    /**
+     * Serialization of the state for snapshots, an actor with a snapshot interval must implement it.
+     */
+    public interface SnapshotCodec {
+
+        /**
+         * Serializes the state of the actor for a snapshot.
+         *
+         * @return state passed to {@link #restoreSnapshot(byte[])}
+         */
+        byte[] saveSnapshot();
+
+        /**
+         * Restores the state from the last snapshot, events after the snapshot are replayed then.
+         *
+         * @param state state returned by {@link #saveSnapshot()}
+         */
+        void restoreSnapshot(byte[] state);
+    }
+
+    /**
+     * Appends the event to the journal and applies it.
+     *
+     * @param event event which changes the state of the actor
+     */
+    protected final void persist(EventType event) {
+        persist(event, null);
+    }
+
+    /**
+     * Appends the event to the journal and applies it, the callback is run by the actor when the event is durable.
+     *
+     * @param event       event which changes the state of the actor
+     * @param onPersisted callback of the durable event, null if there is none
+     */
+    protected final void persist(EventType event, Consumer<? super EventType> onPersisted) {
+        final long nextSequenceNr = sequenceNr + 1;
+        journal.append(this, nextSequenceNr, serializeEvent(event), onPersisted != null);
+        sequenceNr = nextSequenceNr;
+        onEvent(event);
+        if (onPersisted != null) {
+            if (pendingEvents == null) {
+                pendingEvents = new ArrayDeque<>();
+            }
+            pendingEvents.add(new PendingEvent<>(nextSequenceNr, event, onPersisted));
+        }
+        if (snapshotInterval > 0 && sequenceNr - snapshotSequenceNr >= snapshotInterval) {
+            try {
+                journal.saveSnapshot(this, sequenceNr, ((SnapshotCodec) this).saveSnapshot());
+                snapshotSequenceNr = sequenceNr;
+            } catch (IOException | RuntimeException e) {
+                // the events are still in the journal, so the next interval tries again
+                logger.error("Snapshot of actor '{}' was not saved: ", persistenceId, e);
+                snapshotSequenceNr = sequenceNr;
+            }
+        }
+    }
+
+    /**
+     * @return persistence id of the actor
+     */
+    protected final String getPersistenceId() {
+        return persistenceId;
+    }
+
+    /**
+     * @return sequence number of the last persisted or replayed event, 0 if there isn't any
+     */
+    protected final long getSequenceNr() {
+        return sequenceNr;
+    }
+
+    byte[] getPersistenceIdBytes() {
+        return persistenceIdBytes;
+    }
+
+    int getPersistenceIdHash() {
+        return persistenceId.hashCode();
+    }
+
+    /**
+     * The actor doesn't start when its state can't be recovered.
+     */
+    @Override
+    void beforePreStart() {
+        try {
+            final ByteBuffer snapshot = journal.loadSnapshot(this);
+            if (snapshot != null) {
+                // replay starts at the snapshot, so its state can't be skipped
+                if (!(this instanceof SnapshotCodec)) {
+                    throw new IllegalStateException("Actor has a snapshot, but it doesn't implement "
+                            + SnapshotCodec.class.getName());
+                }
+                snapshotSequenceNr = snapshot.getLong(0);
+                final byte[] state = new byte[snapshot.remaining()];
+                snapshot.get(state);
+                ((SnapshotCodec) this).restoreSnapshot(state);
+            }
+            final long lastSequenceNr = journal.replay(this, snapshotSequenceNr,
+                    (eventSequenceNr, bytes) -> onEvent(deserializeEvent(bytes)));
+            sequenceNr = Math.max(snapshotSequenceNr, lastSequenceNr);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Actor '{}' was not recovered, it's stopped: ", persistenceId, e);
+            stopNow();
+        }
+    }
+
+    /**
+     * Called by the flusher thread of the journal.
+     */
+    void eventsFlushed() {
+        flushedSequenceNr = flushingSequenceNr;
+        tellSystemTask(runCallbacks);
+    }
+
+    /**
+     * Called by the flusher thread of the journal when events of the actor may not be durable.
+     */
+    void flushFailed() {
+        tellSystemTask(this::failPendingEvents);
+    }
+
+    /**
+     * The actor can't persist anymore, so it's stopped and callbacks of its unconfirmed events are dropped.
+     */
+    private void failPendingEvents() {
+        logger.error("Journal of Actor '{}' failed to flush {} events, their callbacks are dropped and the actor "
+                + "is stopped", persistenceId, pendingEvents.size());
+        pendingEvents.clear();
+        stop(getSelf());
+    }
+
+    private void runCallbacks() {
+        final long flushed = flushedSequenceNr;
+        PendingEvent<EventType> pendingEvent;
+        while ((pendingEvent = pendingEvents.peek()) != null && pendingEvent.sequenceNr <= flushed) {
+            pendingEvents.poll();
+            try {
+                pendingEvent.onPersisted.accept(pendingEvent.event);
+            } catch (Throwable e) {
+                logger.error("Unexpected exception from callback of Actor '{}': ", persistenceId, e);
+            }
+        }
+    }
+
+    private static final class PendingEvent<EventType> {
+        private final long sequenceNr;
+        private final EventType event;
+        private final Consumer<? super EventType> onPersisted;
+
+        private PendingEvent(long sequenceNr, EventType event, Consumer<? super EventType> onPersisted) {
+            this.sequenceNr = sequenceNr;
+            this.event = event;
+            this.onPersisted = onPersisted;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+/**
+ * Base class of messages which are taken from a {@link MessagePool} and returned to it after they are processed,
+ * so steady-state messaging doesn't allocate. Sending of a message transfers its ownership to the receiver:
+ * <ul>
+ * <li>the sender must not touch the message after {@link ActorRef#tell}</li>
+ * <li>the receiving actor recycles the message when {@link Actor#onMessage} returns, unless it sent the message
+ * further (e.g. replied with the same instance) or retained it by {@link #retain()}</li>
+ * <li>a retained message is recycled by its owner by {@link #recycle()}</li>
+ * </ul>
+ * A pooled message must be sent to a single actor, it can't be broadcast. Messages of {@link BatchActor}
+ * and control messages are not recycled automatically. Fields of the message should be reset by {@link #clear()},
+ * so the pool doesn't keep references to other objects.
+ * <p>
+ * When assertions are enabled (e.g. by {@code -ea} in tests), sending or receiving a recycled message
+ * and recycling a message twice throw {@link IllegalStateException}, and subclasses can check their accessors
+ * by {@link #checkNotRecycled()}. Without assertions the checks cost nothing.
+ */
+public abstract class PooledMessage extends Envelope {
+    static final boolean CHECKS = PooledMessage.class.desiredAssertionStatus();
+
+    MessagePool<?> pool;
+    // incremented whenever the ownership is transferred, written only by the current owner
+    private int stamp;
+    private boolean recycled;
+
+    /**
+     * Resets fields of the message when it's returned to the pool.
+     */
+    protected void clear() {
+    }
+
+    /**
+     * Keeps the message after {@link Actor#onMessage} returns, the caller becomes responsible for {@link #recycle()}.
+     */
+    public final void retain() {
+        checkNotRecycled();
+        stamp++;
+    }
+
+    /**
+     * Returns the message to its pool. The message must not be used by its owner after this call.
+     * A message which wasn't acquired from a pool is left to the garbage collector.
+     */
+    public final void recycle() {
+        if (CHECKS && recycled) {
+            throw new IllegalStateException("Message " + this + " is recycled twice");
+        }
+        recycled = true;
+        clear();
+        if (pool != null) {
+            pool.release(this);
+        }
+    }
+
+    /**
+     * Throws when assertions are enabled and the message was returned to its pool.
+     */
+    protected final void checkNotRecycled() {
+        if (CHECKS && recycled) {
+            throw new IllegalStateException("Message " + this + " is used after it was recycled");
+        }
+    }
+
+    final void acquired() {
+        recycled = false;
+    }
+
+    /**
+     * Is called when the message is sent, the receiver becomes its owner.
+     */
+    final void sent() {
+        checkNotRecycled();
+        stamp++;
+    }
+
+    /**
+     * @return stamp of the ownership when the receiver gets the message
+     */
+    final int received() {
+        checkNotRecycled();
+        return stamp;
+    }
+
+    /**
+     * Recycles the message after it's processed, when the receiver still owns it.
+     */
+    final void recycleIfOwned(int receivedStamp) {
+        if (stamp == receivedStamp) {
+            recycle();
+        }
+    }
+}
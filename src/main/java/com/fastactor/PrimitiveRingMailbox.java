@@ -0,0 +1,228 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Bounded MPSC ring buffer of primitive messages used by {@link IntActor}, {@link LongActor} and {@link DoubleActor}.
+ * Every message is stored as 64 bits in a {@code long[]}, so sending neither boxes the message nor allocates
+ * a queue node. A slot is published by its sequence number (bounded queue of D. Vyukov), producers claim slots
+ * by CAS and the single consumer doesn't need any atomic operation.
+ * <p>
+ * The {@link java.util.Queue} methods box messages, they are used only by generic code of actors
+ * (e.g. dead letters or a full mailbox). Poll and peek may be called only by the consumer.
+ *
+ * @param <MessageType> boxed type of messages
+ */
+final class PrimitiveRingMailbox<MessageType> extends AbstractQueue<MessageType> {
+    private static final VarHandle PRODUCER_INDEX;
+
+    private final long[] values;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final LongFunction<MessageType> box;
+    private final ToLongFunction<? super MessageType> unbox;
+    private volatile long producerIndex;
+    // written only by the consumer
+    private volatile long consumerIndex;
+
+    static {
+        try {
+            PRODUCER_INDEX = MethodHandles.lookup().findVarHandle(PrimitiveRingMailbox.class, "producerIndex",
+                    long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * @param capacity maximum number of waiting messages, it is rounded up to the next power of two
+     * @param box      converts 64 bits of a message to the boxed message
+     * @param unbox    converts the boxed message to 64 bits
+     */
+    PrimitiveRingMailbox(int capacity, LongFunction<MessageType> box, ToLongFunction<? super MessageType> unbox) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Mailbox capacity must be positive, but it is " + capacity);
+        }
+        final int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.values = new long[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int s = 0; s < size; s++) {
+            sequences.lazySet(s, s);
+        }
+        this.mask = size - 1;
+        this.box = box;
+        this.unbox = unbox;
+    }
+
+    /**
+     * Checks the capacity at once, although the mailbox is created by the first message.
+     */
+    static <T> Supplier<Queue<T>> factory(int capacity, LongFunction<T> box, ToLongFunction<? super T> unbox) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Mailbox capacity must be positive, but it is " + capacity);
+        }
+        return () -> new PrimitiveRingMailbox<>(capacity, box, unbox);
+    }
+
+    /**
+     * The mailbox has a single consumer, so producers can't drop the oldest messages.
+     */
+    static OverflowStrategy checkOverflowStrategy(OverflowStrategy overflowStrategy) {
+        if (overflowStrategy == OverflowStrategy.DROP_OLDEST) {
+            throw new IllegalArgumentException("Primitive actors don't support " + overflowStrategy);
+        }
+        return overflowStrategy;
+    }
+
+    /**
+     * @return false if the mailbox is full
+     */
+    boolean offerBits(long bits) {
+        long index = producerIndex;
+        while (true) {
+            final int slot = (int) index & mask;
+            final long sequence = sequences.get(slot);
+            if (sequence == index) {
+                if (PRODUCER_INDEX.compareAndSet(this, index, index + 1)) {
+                    values[slot] = bits;
+                    sequences.lazySet(slot, index + 1);
+                    return true;
+                }
+                index = producerIndex;
+            } else if (sequence < index) {
+                // the slot wasn't consumed since the previous round
+                return false;
+            } else {
+                index = producerIndex;
+            }
+        }
+    }
+
+    /**
+     * @return true if the next message is published, so {@link #pollBits()} can be called
+     */
+    boolean canPoll() {
+        final long index = consumerIndex;
+        return sequences.get((int) index & mask) == index + 1;
+    }
+
+    /**
+     * Must be called only when {@link #canPoll()} returned true.
+     */
+    long pollBits() {
+        final long index = consumerIndex;
+        final int slot = (int) index & mask;
+        final long bits = values[slot];
+        sequences.lazySet(slot, index + values.length);
+        consumerIndex = index + 1;
+        return bits;
+    }
+
+    MessageType box(long bits) {
+        return box.apply(bits);
+    }
+
+    int capacity() {
+        return values.length;
+    }
+
+    @Override
+    public boolean offer(MessageType message) {
+        return offerBits(unbox.applyAsLong(message));
+    }
+
+    @Override
+    public MessageType poll() {
+        return canPoll() ? box.apply(pollBits()) : null;
+    }
+
+    @Override
+    public MessageType peek() {
+        return canPoll() ? box.apply(values[(int) consumerIndex & mask]) : null;
+    }
+
+    /**
+     * A message in a claimed slot which isn't published yet makes the mailbox non-empty,
+     * so an actor is never left unscheduled.
+     */
+    @Override
+    public boolean isEmpty() {
+        return producerIndex == consumerIndex;
+    }
+
+    @Override
+    public int size() {
+        final long consumer = consumerIndex;
+        return (int) Math.max(0, Math.min(producerIndex - consumer, values.length));
+    }
+
+    /**
+     * Weakly consistent iterator for inspection (like {@link #contains} or {@link #toString}), it can be used by any
+     * thread, but it stops early when it reaches a message which is being polled or which isn't published yet.
+     * Mailboxes are consumed only by poll, so the iterator doesn't support removal, like iterators of JCTools queues.
+     */
+    @Override
+    public Iterator<MessageType> iterator() {
+        return new Iterator<>() {
+            private long index = consumerIndex;
+            private long nextBits;
+            private boolean hasNext = advance();
+
+            @Override
+            public boolean hasNext() {
+                return hasNext;
+            }
+
+            @Override
+            public MessageType next() {
+                if (!hasNext) {
+                    throw new NoSuchElementException();
+                }
+                final long bits = nextBits;
+                index++;
+                hasNext = advance();
+                return box.apply(bits);
+            }
+
+            /**
+             * Reads the slot of the index, the value is valid only when the slot wasn't released by the consumer
+             * meanwhile, because a producer can overwrite it then (like validation of an optimistic read).
+             */
+            private boolean advance() {
+                final int slot = (int) index & mask;
+                if (sequences.get(slot) != index + 1) {
+                    return false;
+                }
+                final long bits = values[slot];
+                VarHandle.acquireFence();
+                if (sequences.get(slot) != index + 1) {
+                    return false;
+                }
+                nextBits = bits;
+                return true;
+            }
+        };
+    }
+}
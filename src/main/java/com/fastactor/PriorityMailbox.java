@@ -0,0 +1,160 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+import org.jctools.queues.MpscUnboundedArrayQueue;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Mailbox with a fixed number of priority bands, it can be passed to {@link Actor#Actor(String, Supplier)}.
+ * Every band is a separate FIFO queue, so a message is never compared with other messages, sending is O(1)
+ * and receiving is O(number of bands). Band 0 has the highest priority, messages of the same band keep their order.
+ * <p>
+ * It's intended for a few bands (e.g. high, normal, low). Lower bands can starve when higher bands never get empty.
+ *
+ * @param <MessageType> base type of actor messages
+ */
+public final class PriorityMailbox<MessageType> extends AbstractQueue<MessageType> {
+    private static final int BAND_CHUNK_SIZE = 64;
+    private final Queue<MessageType>[] bands;
+    private final ToIntFunction<? super MessageType> priority;
+
+    /**
+     * Creates a mailbox with unbounded bands {@link org.jctools.queues.MpscUnboundedArrayQueue}, they allocate
+     * per chunk of 64 messages and they can be iterated.
+     *
+     * @param bandsNumber number of priority bands
+     * @param priority    band of a message, from 0 (the highest priority) to bandsNumber - 1
+     */
+    public PriorityMailbox(int bandsNumber, ToIntFunction<? super MessageType> priority) {
+        this(bandsNumber, priority, () -> new MpscUnboundedArrayQueue<>(BAND_CHUNK_SIZE));
+    }
+
+    /**
+     * Creates a mailbox with bands created by the factory. Bands must be safe for multiple producers.
+     *
+     * @param bandsNumber number of priority bands
+     * @param priority    band of a message, from 0 (the highest priority) to bandsNumber - 1
+     * @param bandFactory factory for creation of bands
+     */
+    public PriorityMailbox(int bandsNumber, ToIntFunction<? super MessageType> priority,
+                           Supplier<Queue<MessageType>> bandFactory) {
+        if (bandsNumber <= 0) {
+            throw new IllegalArgumentException("Number of bands must be positive, but it is " + bandsNumber);
+        }
+
+        this.priority = priority;
+        // every band is created by the factory of Queue<MessageType>
+        @SuppressWarnings("unchecked")
+        final Queue<MessageType>[] createdBands = (Queue<MessageType>[]) new Queue<?>[bandsNumber];
+        for (int b = 0; b < bandsNumber; b++) {
+            createdBands[b] = bandFactory.get();
+        }
+        this.bands = createdBands;
+    }
+
+    /**
+     * @return number of priority bands
+     */
+    public int getBandsNumber() {
+        return bands.length;
+    }
+
+    @Override
+    public boolean offer(MessageType message) {
+        final int band = priority.applyAsInt(message);
+        if (band < 0 || band >= bands.length) {
+            throw new IllegalArgumentException("Priority of message " + message + " must be in range [0, "
+                    + bands.length + "), but it is " + band);
+        }
+        return bands[band].offer(message);
+    }
+
+    @Override
+    public MessageType poll() {
+        for (Queue<MessageType> band : bands) {
+            MessageType message = band.poll();
+            if (message != null) {
+                return message;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public MessageType peek() {
+        for (Queue<MessageType> band : bands) {
+            MessageType message = band.peek();
+            if (message != null) {
+                return message;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (Queue<MessageType> band : bands) {
+            if (!band.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Queue<MessageType> band : bands) {
+            size += band.size();
+        }
+        return size;
+    }
+
+    /**
+     * Weakly consistent iterator for inspection (like {@link #contains} or {@link #toString}), it iterates bands
+     * from the highest priority, so it's as consistent as iterators of the bands. Bands created by a factory must
+     * support iteration, {@link org.jctools.queues.MpscLinkedQueue} doesn't. Mailboxes are consumed only by poll,
+     * so the iterator doesn't support removal.
+     */
+    @Override
+    public Iterator<MessageType> iterator() {
+        return new Iterator<>() {
+            private int band;
+            private Iterator<MessageType> current = bands[0].iterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && band < bands.length - 1) {
+                    current = bands[++band].iterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public MessageType next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+}
@@ -23,12 +23,24 @@ public interface Routee<T> {
 
     /**
      * Use for implementation of Router strategy which need info about current size of mailbox.
+     * Mailboxes of routees count their messages when the routing logic requires it
+     * (see {@link Router.RoutingLogic#isMailboxSizeTracked()}), so it's O(1) and approximate under concurrent access.
+     * Otherwise it's linear time operation for linked queues like {@link org.jctools.queues.MpscLinkedQueue}.
      *
      * @return number of messages waiting in mailbox
      */
 
     int getMailboxSize();
 
+    /**
+     * Use for implementation of Router strategy which prefers routees which are not processing messages.
+     *
+     * @return true if the routee is neither processing nor scheduled to process messages
+     */
+    default boolean isIdle() {
+        return getMailboxSize() == 0;
+    }
+
     /**
      * Use for sending message to routee.
      *
@@ -16,15 +16,25 @@ package com.fastactor;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.jctools.queues.MpmcUnboundedXaddArrayQueue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.ToLongFunction;
 import java.util.function.Supplier;
 
 /**
  * Messages can be sent via a router to efficiently route them to destination actors, known as its routees.
- * A Router can be used inside or outside of an actor. It acts as special actor.
+ * A Router can be used inside or outside of an actor. It acts as special actor, or it routes messages directly
+ * on the thread which sends them, see {@link #setRoutingOnCallerThread(boolean)}.
  * <p>
  * Different routing strategies can be used, according to your application’s needs.
  * It comes with several useful routing strategies right out of the box. But it is also possible to create your own.
@@ -34,11 +44,24 @@ import java.util.function.Supplier;
  */
 public final class Router<RouteeMessageType, RoutingType extends RouteeMessageType> {
     private RoutingLogic<RouteeMessageType, RoutingType> routingLogic;
-    private List<Routee<RouteeMessageType>> routees;
-    private List<Actor<RouteeMessageType>> actors;
+    // lists are replaced, not modified, when the pool is resized
+    private volatile List<Routee<RouteeMessageType>> routees;
+    private volatile List<Actor<RouteeMessageType>> actors;
     private InternalRouter internalRouter;
+    private CallerThreadRef callerThreadRef;
+    private Supplier<Actor<RouteeMessageType>> actorFactory;
+    private Queue<RouteeMessageType> sharedMailbox;
+    private Resizer resizer;
+    private ActorSystem actorSystem;
+    private Dispatcher dispatcher;
+    // guarded by this
+    private final List<Actor<RouteeMessageType>> retiredActors = new ArrayList<>();
+    private Cancellable resizeTimer;
+    private long idleSince = -1;
+    private boolean stopped;
 
     private static final Logger logger = LogManager.getLogger(Router.class);
+    private static final int SHARED_MAILBOX_CHUNK_SIZE = 1024;
 
     /**
      * Interface for implementation of custom routing logic.
@@ -54,6 +77,49 @@ public final class Router<RouteeMessageType, RoutingType extends RouteeMessageTy
          * @param routees candidates for the message processing
          */
         void select(RoutingMessageType message, List<Routee<RouteeMessageType>> routees);
+
+        /**
+         * Called when several messages need to be routed at once, e.g. sent by {@link ActorRef#tellAll}.
+         * The list is reused by the router, so it can't be stored.
+         *
+         * @param messages messages which will be routed in the given order
+         * @param routees  candidates for the message processing
+         */
+        default void selectAll(List<RoutingMessageType> messages, List<Routee<RouteeMessageType>> routees) {
+            for (RoutingMessageType message : messages) {
+                select(message, routees);
+            }
+        }
+
+        /**
+         * Thread-safe logic can be called concurrently by threads which send messages to the router,
+         * see {@link #setRoutingOnCallerThread(boolean)}.
+         *
+         * @return true if the logic is thread-safe
+         */
+        default boolean isThreadSafe() {
+            return false;
+        }
+
+        /**
+         * When the logic requires a shared mailbox, the router replaces mailboxes of all routees by one queue,
+         * so a message sent to any routee can be processed by any of them.
+         *
+         * @return true if routees share one mailbox
+         */
+        default boolean isSharedMailbox() {
+            return false;
+        }
+
+        /**
+         * When the logic reads mailbox sizes of routees for every message, the router makes them O(1)
+         * by counting messages of each mailbox, which costs an extra atomic update per enqueue and dequeue.
+         *
+         * @return true if mailbox sizes of routees are counted
+         */
+        default boolean isMailboxSizeTracked() {
+            return false;
+        }
     }
 
     /**
@@ -70,6 +136,18 @@ public final class Router<RouteeMessageType, RoutingType extends RouteeMessageTy
                 routee.getActorRef().tell(message);
             }
         }
+
+        @Override
+        public void selectAll(List<RoutingType> messages, List<Routee<RouteeMessageType>> routees) {
+            for (Routee<RouteeMessageType> routee : routees) {
+                routee.getActorRef().tellAll(messages);
+            }
+        }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
     }
 
     /**
@@ -79,41 +157,471 @@ public final class Router<RouteeMessageType, RoutingType extends RouteeMessageTy
      * @param <RoutingType>       type of messages which you need to route
      */
     public static class RoundRobinRoutingLogic<RouteeMessageType, RoutingType extends RouteeMessageType> implements RoutingLogic<RouteeMessageType, RoutingType> {
-        private int lastIndex = 0;
+        private final AtomicInteger nextIndex = new AtomicInteger();
 
         @Override
         public void select(RoutingType message, List<Routee<RouteeMessageType>> routees) {
-            int targetRoutee = lastIndex;
+            int targetRoutee = Math.floorMod(nextIndex.getAndIncrement(), routees.size());
+            routees.get(targetRoutee).getActorRef().tell(message);
+        }
 
-            if (targetRoutee >= routees.size()) {
-                targetRoutee = 0;
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
+    }
+
+    /**
+     * Routes to the routee with the smallest mailbox, so slow routees get less messages when processing costs
+     * of messages are uneven. Routees with the same mailbox size are chosen randomly.
+     * <p>
+     * By default mailboxes of all routees are compared. For big pools only a few randomly sampled routees can be
+     * compared, already two choices avoid most of the imbalance of random routing for O(1) cost
+     * (M. Mitzenmacher, The Power of Two Choices in Randomized Load Balancing).
+     *
+     * @param <RouteeMessageType> base type of routee messages
+     * @param <RoutingType>       type of messages which you need to route
+     */
+    public static class SmallestMailboxRoutingLogic<RouteeMessageType, RoutingType extends RouteeMessageType> implements RoutingLogic<RouteeMessageType, RoutingType> {
+        private final int choices;
+
+        /**
+         * Compares mailboxes of all routees.
+         */
+        public SmallestMailboxRoutingLogic() {
+            this(Integer.MAX_VALUE);
+        }
+
+        /**
+         * @param choices number of randomly sampled routees which are compared, 2 for the power of two choices
+         */
+        public SmallestMailboxRoutingLogic(int choices) {
+            if (choices <= 0) {
+                throw new IllegalArgumentException("Number of choices must be positive, but it is " + choices);
             }
+            this.choices = choices;
+        }
 
-            routees.get(targetRoutee).getActorRef().tell(message);
-            lastIndex++;
+        @Override
+        public void select(RoutingType message, List<Routee<RouteeMessageType>> routees) {
+            final int size = routees.size();
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            Routee<RouteeMessageType> target;
+            if (choices >= size) {
+                // the scan starts at random position, so ties don't always go to the first routee
+                final int start = random.nextInt(size);
+                target = routees.get(start);
+                int targetMailboxSize = target.getMailboxSize();
+                for (int r = 1; r < size && targetMailboxSize > 0; r++) {
+                    Routee<RouteeMessageType> routee = routees.get((start + r) % size);
+                    int mailboxSize = routee.getMailboxSize();
+                    if (mailboxSize < targetMailboxSize) {
+                        target = routee;
+                        targetMailboxSize = mailboxSize;
+                    }
+                }
+            } else {
+                target = routees.get(random.nextInt(size));
+                int targetMailboxSize = target.getMailboxSize();
+                for (int c = 1; c < choices && targetMailboxSize > 0; c++) {
+                    Routee<RouteeMessageType> routee = routees.get(random.nextInt(size));
+                    int mailboxSize = routee.getMailboxSize();
+                    if (mailboxSize < targetMailboxSize) {
+                        target = routee;
+                        targetMailboxSize = mailboxSize;
+                    }
+                }
+            }
+            target.getActorRef().tell(message);
+        }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
+
+        @Override
+        public boolean isMailboxSizeTracked() {
+            return true;
+        }
+    }
+
+    /**
+     * Routees of a balancing router share one mailbox, so a message waits only until any routee is free instead of
+     * waiting behind slow messages in the mailbox of one busy routee. It suits stateless routees whose messages
+     * have very uneven processing costs. Messages are not ordered, even those sent by the same sender.
+     * <p>
+     * A message is enqueued to the shared mailbox via an idle routee, which is woken up by it. When all routees
+     * are busy, the message is taken by the first routee which finishes its message. Bounded mailboxes
+     * of routees are replaced by the unbounded shared mailbox.
+     *
+     * @param <RouteeMessageType> base type of routee messages
+     * @param <RoutingType>       type of messages which you need to route
+     */
+    public static class BalancingRoutingLogic<RouteeMessageType, RoutingType extends RouteeMessageType> implements RoutingLogic<RouteeMessageType, RoutingType> {
+
+        @Override
+        public void select(RoutingType message, List<Routee<RouteeMessageType>> routees) {
+            final int size = routees.size();
+            final int start = ThreadLocalRandom.current().nextInt(size);
+            for (int r = 0; r < size; r++) {
+                Routee<RouteeMessageType> routee = routees.get((start + r) % size);
+                if (routee.isIdle()) {
+                    routee.getActorRef().tell(message);
+                    return;
+                }
+            }
+            routees.get(start).getActorRef().tell(message);
+        }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
+
+        @Override
+        public boolean isSharedMailbox() {
+            return true;
+        }
+    }
+
+    /**
+     * Sends a request to several routees at once and delivers only the first reply to the requester, the other
+     * replies are ignored. It cuts tail latency of requests to replicated routees, for the cost of repeated work.
+     * <p>
+     * The reply is correlated by a temporary reply ActorRef, so messages must carry an ActorRef for the reply
+     * (like messages sent by {@link ActorRef#ask}). The routing logic reads the original one and creates a copy
+     * of the message which replies to the temporary one. The same copy is sent to all chosen routees.
+     * There is no timeout of the router, the requester should ask with a timeout.
+     *
+     * @param <RouteeMessageType> base type of routee messages
+     * @param <RoutingType>       type of messages which you need to route
+     * @param <ReplyType>         type of replies
+     */
+    public static class ScatterGatherFirstCompletedRoutingLogic<RouteeMessageType, RoutingType extends RouteeMessageType, ReplyType> implements RoutingLogic<RouteeMessageType, RoutingType> {
+        private final Function<? super RoutingType, ActorRef<ReplyType>> replyTo;
+        private final BiFunction<? super RoutingType, ActorRef<ReplyType>, ? extends RoutingType> withReplyTo;
+        private final int targets;
+
+        /**
+         * Sends every request to all routees.
+         *
+         * @param replyTo     returns ActorRef for the reply of a message
+         * @param withReplyTo returns copy of a message with the given ActorRef for the reply
+         */
+        public ScatterGatherFirstCompletedRoutingLogic(Function<? super RoutingType, ActorRef<ReplyType>> replyTo,
+                                                       BiFunction<? super RoutingType, ActorRef<ReplyType>, ? extends RoutingType> withReplyTo) {
+            this(replyTo, withReplyTo, Integer.MAX_VALUE);
+        }
+
+        /**
+         * @param replyTo     returns ActorRef for the reply of a message
+         * @param withReplyTo returns copy of a message with the given ActorRef for the reply
+         * @param targets     number of routees which get a request, they are chosen randomly
+         */
+        public ScatterGatherFirstCompletedRoutingLogic(Function<? super RoutingType, ActorRef<ReplyType>> replyTo,
+                                                       BiFunction<? super RoutingType, ActorRef<ReplyType>, ? extends RoutingType> withReplyTo,
+                                                       int targets) {
+            if (targets <= 0) {
+                throw new IllegalArgumentException("Number of targets must be positive, but it is " + targets);
+            }
+            this.replyTo = replyTo;
+            this.withReplyTo = withReplyTo;
+            this.targets = targets;
+        }
+
+        @Override
+        public void select(RoutingType message, List<Routee<RouteeMessageType>> routees) {
+            final RoutingType request = withReplyTo.apply(message, new FirstReplyRef<>(replyTo.apply(message)));
+            final int size = routees.size();
+            if (targets >= size) {
+                for (int r = 0; r < size; r++) {
+                    routees.get(r).getActorRef().tell(request);
+                }
+            } else {
+                final int start = ThreadLocalRandom.current().nextInt(size);
+                for (int r = 0; r < targets; r++) {
+                    routees.get((start + r) % size).getActorRef().tell(request);
+                }
+            }
+        }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
+    }
+
+    /**
+     * Sends a request to a random routee and, when it doesn't reply within the interval, to the next routee,
+     * until a reply arrives or all routees got the request. Only the first reply is delivered to the requester.
+     * Unlike {@link ScatterGatherFirstCompletedRoutingLogic} the work is repeated only for slow requests.
+     * <p>
+     * Messages must carry an ActorRef for the reply, see {@link ScatterGatherFirstCompletedRoutingLogic}.
+     * Next sends are scheduled by the timer of the actor system, so they cost O(1) and they are cancelled
+     * by the first reply.
+     *
+     * @param <RouteeMessageType> base type of routee messages
+     * @param <RoutingType>       type of messages which you need to route
+     * @param <ReplyType>         type of replies
+     */
+    public static class TailChoppingRoutingLogic<RouteeMessageType, RoutingType extends RouteeMessageType, ReplyType> implements RoutingLogic<RouteeMessageType, RoutingType> {
+        private static final ActorRef<TailChop<?, ?>> CHOPPER = TailChop::sendNext;
+        private final ActorSystem actorSystem;
+        private final long intervalNanos;
+        private final Function<? super RoutingType, ActorRef<ReplyType>> replyTo;
+        private final BiFunction<? super RoutingType, ActorRef<ReplyType>, ? extends RoutingType> withReplyTo;
+
+        /**
+         * @param actorSystem actor system whose timer schedules next sends
+         * @param interval    time after which the request is sent to the next routee
+         * @param unit        unit for interval
+         * @param replyTo     returns ActorRef for the reply of a message
+         * @param withReplyTo returns copy of a message with the given ActorRef for the reply
+         */
+        public TailChoppingRoutingLogic(ActorSystem actorSystem, long interval, TimeUnit unit,
+                                        Function<? super RoutingType, ActorRef<ReplyType>> replyTo,
+                                        BiFunction<? super RoutingType, ActorRef<ReplyType>, ? extends RoutingType> withReplyTo) {
+            if (interval <= 0) {
+                throw new IllegalArgumentException("Interval must be positive, but it is " + interval);
+            }
+            this.actorSystem = actorSystem;
+            this.intervalNanos = unit.toNanos(interval);
+            this.replyTo = replyTo;
+            this.withReplyTo = withReplyTo;
+        }
+
+        @Override
+        public void select(RoutingType message, List<Routee<RouteeMessageType>> routees) {
+            final TailChop<RouteeMessageType, ReplyType> chop = new TailChop<>(this, routees, replyTo.apply(message));
+            chop.request = withReplyTo.apply(message, chop);
+            chop.sendNext();
+        }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
+
+        /**
+         * A request which is being sent to routees one by one. Sends are never concurrent, the next one
+         * is scheduled by the previous one.
+         */
+        private static final class TailChop<RouteeMessageType, ReplyType> extends FirstReplyRef<ReplyType> {
+            private final TailChoppingRoutingLogic<RouteeMessageType, ?, ReplyType> logic;
+            // lists of routees are never modified by the router, so a list can be used after routing
+            private final List<Routee<RouteeMessageType>> routees;
+            private final int start;
+            private int sent;
+            private RouteeMessageType request;
+
+            private TailChop(TailChoppingRoutingLogic<RouteeMessageType, ?, ReplyType> logic,
+                             List<Routee<RouteeMessageType>> routees, ActorRef<ReplyType> replyTo) {
+                super(replyTo);
+                this.logic = logic;
+                this.routees = routees;
+                this.start = ThreadLocalRandom.current().nextInt(routees.size());
+            }
+
+            private void sendNext() {
+                final int size = routees.size();
+                if (isReplied() || sent == size) {
+                    return;
+                }
+                routees.get((start + sent++) % size).getActorRef().tell(request);
+                if (sent < size && !isReplied()) {
+                    timer = logic.actorSystem.scheduleOnce(logic.intervalNanos, TimeUnit.NANOSECONDS, CHOPPER, this);
+                }
+            }
         }
     }
 
     /**
      * The ConsistentHashingRoutingLogic uses hashFunction to select a routee based on the sent message.
+     * Messages with the same hash always go to the same routee while the pool doesn't change.
+     * <p>
+     * Routees are placed on a hash ring, each of them at several points (virtual nodes) derived from its name and
+     * identity, and a message goes to the first point following its hash. When a routee is added or removed,
+     * only messages of its neighbouring segments move, so state kept by routees for their keys stays valid.
+     * The ring is a sorted array, it's rebuilt only when the list of routees changes and a lookup is a binary search.
      *
      * @param <RouteeMessageType> base type of routee messages
      * @param <RoutingType>       type of messages which you need to route
      */
     public static class ConsistentHashingRoutingLogic<RouteeMessageType, RoutingType extends RouteeMessageType> implements RoutingLogic<RouteeMessageType, RoutingType> {
-        private final Function<RoutingType, Long> hashFunction;
+        /**
+         * Number of virtual nodes of a routee used by constructors without this parameter.
+         */
+        public static final int DEFAULT_VIRTUAL_NODES_FACTOR = 100;
+
+        private final ToLongFunction<? super RoutingType> hashFunction;
+        private final int virtualNodesFactor;
+        private volatile HashRing<RouteeMessageType> ring;
 
         /**
-         * @param hashFunction hash function for message distribution
+         * @param hashFunction       hash function for message distribution
+         * @param virtualNodesFactor number of points of each routee on the ring, more points distribute messages
+         *                           more evenly
          */
-        public ConsistentHashingRoutingLogic(Function<RoutingType, Long> hashFunction) {
+        public ConsistentHashingRoutingLogic(ToLongFunction<? super RoutingType> hashFunction, int virtualNodesFactor) {
+            if (virtualNodesFactor <= 0) {
+                throw new IllegalArgumentException("Virtual nodes factor must be positive, but it is "
+                        + virtualNodesFactor);
+            }
             this.hashFunction = hashFunction;
+            this.virtualNodesFactor = virtualNodesFactor;
+        }
+
+        /**
+         * Uses {@link #DEFAULT_VIRTUAL_NODES_FACTOR} virtual nodes per routee.
+         *
+         * @param hashFunction hash function for message distribution
+         */
+        public ConsistentHashingRoutingLogic(ToLongFunction<? super RoutingType> hashFunction) {
+            this(hashFunction, DEFAULT_VIRTUAL_NODES_FACTOR);
         }
 
         @Override
         public void select(RoutingType message, List<Routee<RouteeMessageType>> routees) {
-            int targetRoutee = (int) (hashFunction.apply(message) % routees.size());
-            routees.get(targetRoutee).getActorRef().tell(message);
+            HashRing<RouteeMessageType> currentRing = ring;
+            if (currentRing == null || currentRing.routees != routees) {
+                // concurrent rebuilds create equal rings
+                currentRing = new HashRing<>(routees, virtualNodesFactor);
+                ring = currentRing;
+            }
+            currentRing.get(hashFunction.applyAsLong(message)).getActorRef().tell(message);
+        }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
+    }
+
+    /**
+     * Immutable hash ring of {@link ConsistentHashingRoutingLogic}.
+     */
+    static final class HashRing<RouteeMessageType> {
+        private final List<Routee<RouteeMessageType>> routees;
+        private final long[] points;
+        private final Routee<RouteeMessageType>[] owners;
+
+        HashRing(List<Routee<RouteeMessageType>> routees, int virtualNodesFactor) {
+            this.routees = routees;
+            final int size = routees.size() * virtualNodesFactor;
+            final long[] unsortedPoints = new long[size];
+            final Integer[] order = new Integer[size];
+            for (int r = 0; r < routees.size(); r++) {
+                // points don't depend on the position of the routee in the pool, the identity hash separates
+                // routees with equal names
+                final ActorRef<RouteeMessageType> actorRef = routees.get(r).getActorRef();
+                final long routeeHash = mix((long) actorRef.hashCode() << 32
+                        | System.identityHashCode(actorRef) & 0xffffffffL);
+                for (int v = 0; v < virtualNodesFactor; v++) {
+                    final int point = r * virtualNodesFactor + v;
+                    unsortedPoints[point] = mix(routeeHash + v);
+                    order[point] = point;
+                }
+            }
+            Arrays.sort(order, (first, second) -> Long.compare(unsortedPoints[first], unsortedPoints[second]));
+
+            points = new long[size];
+            owners = newRoutees(size);
+            for (int p = 0; p < size; p++) {
+                points[p] = unsortedPoints[order[p]];
+                owners[p] = routees.get(order[p] / virtualNodesFactor);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> Routee<T>[] newRoutees(int size) {
+            // the array is private and holds only routees of the ring
+            return (Routee<T>[]) new Routee<?>[size];
+        }
+
+        Routee<RouteeMessageType> get(long hash) {
+            final int index = Arrays.binarySearch(points, mix(hash));
+            final int point = index >= 0 ? index : -index - 1;
+            return owners[point < points.length ? point : 0];
+        }
+
+        /**
+         * Finalizer of MurmurHash3, so that sequential keys are spread over the whole ring.
+         */
+        private static long mix(long hash) {
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+
+    /**
+     * Configuration of an elastic pool, see {@link #setResizer(Resizer)}.
+     * <p>
+     * Pressure of the pool is the average mailbox size of its routees. It's sampled periodically,
+     * so resizing costs nothing per message:
+     * <ul>
+     * <li>when the pressure is above the threshold, the pool grows by a quarter of its size (at least one routee)</li>
+     * <li>when all mailboxes are empty for the whole cooldown, one routee is removed per evaluation</li>
+     * </ul>
+     */
+    public static final class Resizer {
+        static final double RAMPUP_RATE = 0.25;
+
+        private final int lowerBound;
+        private final int upperBound;
+        private final int pressureThreshold;
+        private final long evaluationIntervalNanos;
+        private final long idleCooldownNanos;
+
+        /**
+         * @param lowerBound         minimal number of routees
+         * @param upperBound         maximal number of routees
+         * @param pressureThreshold  average mailbox size above which the pool grows
+         * @param evaluationInterval period of resize evaluation
+         * @param idleCooldown       how long the pool must be idle before it shrinks
+         * @param unit               unit for evaluationInterval and idleCooldown
+         */
+        public Resizer(int lowerBound, int upperBound, int pressureThreshold, long evaluationInterval,
+                       long idleCooldown, TimeUnit unit) {
+            if (lowerBound <= 0 || upperBound < lowerBound) {
+                throw new IllegalArgumentException("Bounds must be 0 < lowerBound <= upperBound, but they are "
+                        + lowerBound + " and " + upperBound);
+            }
+            if (pressureThreshold < 0) {
+                throw new IllegalArgumentException("Pressure threshold can't be negative, but it is " + pressureThreshold);
+            }
+            if (evaluationInterval <= 0 || idleCooldown < 0) {
+                throw new IllegalArgumentException("Evaluation interval must be positive and idle cooldown can't be negative");
+            }
+            this.lowerBound = lowerBound;
+            this.upperBound = upperBound;
+            this.pressureThreshold = pressureThreshold;
+            this.evaluationIntervalNanos = unit.toNanos(evaluationInterval);
+            this.idleCooldownNanos = unit.toNanos(idleCooldown);
+        }
+
+        public int getLowerBound() {
+            return lowerBound;
+        }
+
+        public int getUpperBound() {
+            return upperBound;
+        }
+
+        /**
+         * @param poolSize current number of routees
+         * @param pressure sum of mailbox sizes of routees
+         * @return number of routees which are added to the pool
+         */
+        int capacityToAdd(int poolSize, long pressure) {
+            if (pressure <= (long) pressureThreshold * poolSize || poolSize >= upperBound) {
+                return 0;
+            }
+            return Math.min(upperBound - poolSize, Math.max(1, (int) Math.ceil(poolSize * RAMPUP_RATE)));
         }
     }
 
@@ -124,6 +632,7 @@ public final class Router<RouteeMessageType, RoutingType extends RouteeMessageTy
      */
     public Router(RoutingLogic<RouteeMessageType, RoutingType> routingLogic, Supplier<Actor<RouteeMessageType>> actorFactory, int poolSize) {
         init(routingLogic, supplierToList(actorFactory, poolSize), null);
+        this.actorFactory = actorFactory;
     }
 
     /**
@@ -135,6 +644,7 @@ public final class Router<RouteeMessageType, RoutingType extends RouteeMessageTy
     public Router(String name, RoutingLogic<RouteeMessageType, RoutingType> routingLogic,
                   Supplier<Actor<RouteeMessageType>> actorFactory, int poolSize) {
         init(routingLogic, supplierToList(actorFactory, poolSize), name);
+        this.actorFactory = actorFactory;
     }
 
     /**
@@ -171,26 +681,221 @@ public final class Router<RouteeMessageType, RoutingType extends RouteeMessageTy
         return actors;
     }
 
-    private class InternalRouter extends Actor<RoutingType> {
+    /**
+     * By default messages are enqueued to the router, which routes them in batches on its own thread. It's necessary
+     * for routing logics which are not thread-safe, but it costs one extra enqueue and scheduling per message and all
+     * routing of the pool is serialized.
+     * <p>
+     * When routing on the caller thread is enabled, {@link ActorRef#tell(Object)} of the router calls the routing logic
+     * directly on the sending thread, so a message goes straight to the mailbox of its routee. The router still acts
+     * as an actor for stopping, see {@link ActorSystem#stop(ActorRef)}.
+     * <p>
+     * It must be set before the router is assigned to an actor system.
+     *
+     * @param routingOnCallerThread true for routing on the thread which sends a message
+     */
+    public void setRoutingOnCallerThread(boolean routingOnCallerThread) {
+        if (routingOnCallerThread && !routingLogic.isThreadSafe()) {
+            throw new IllegalArgumentException("Routing logic " + routingLogic.getClass().getName()
+                    + " is not thread-safe, so it can't route on the caller thread");
+        }
+        this.callerThreadRef = routingOnCallerThread ? new CallerThreadRef() : null;
+    }
+
+    /**
+     * Makes the pool elastic. The resizer periodically grows the pool by routees created by the actor factory
+     * of the router when routees are backlogged and it stops routees when the pool is idle. Messages of the removed
+     * routee are processed before it's stopped.
+     * <p>
+     * It must be set before the router is assigned to an actor system and it's available only for routers created
+     * with an actor factory. The initial pool size is used as it is, the bounds limit only resizing.
+     *
+     * @param resizer configuration of resizing
+     */
+    public void setResizer(Resizer resizer) {
+        if (actorFactory == null) {
+            throw new IllegalStateException("Resizer requires a router created with an actor factory");
+        }
+        this.resizer = resizer;
+    }
+
+    /**
+     * @return current number of routees
+     */
+    public int getPoolSize() {
+        return routees.size();
+    }
+
+    /**
+     * @return router actor of the ActorRef, null if the ActorRef doesn't route on the caller thread
+     */
+    static Actor<?> getInternalRouter(ActorRef<?> actorRef) {
+        return actorRef instanceof Router.CallerThreadRef ? ((Router<?, ?>.CallerThreadRef) actorRef).getInternalRouter()
+                : null;
+    }
+
+    /**
+     * Routes messages on the thread which sends them.
+     */
+    private class CallerThreadRef implements ActorRef<RoutingType> {
+
+        @Override
+        public void tell(RoutingType message) {
+            routingLogic.select(message, routees);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void tellAll(Collection<? extends RoutingType> messages) {
+            // the list is only read by the routing logic
+            routingLogic.selectAll(messages instanceof List ? (List<RoutingType>) messages
+                    : new ArrayList<>(messages), routees);
+        }
+
+        @Override
+        public void tellAll(RoutingType[] messages) {
+            routingLogic.selectAll(Arrays.asList(messages), routees);
+        }
+
+        @Override
+        public int hashCode() {
+            return internalRouter.getName().hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "ActorRef(" + internalRouter.getName() + ")";
+        }
+
+        private Actor<?> getInternalRouter() {
+            return internalRouter;
+        }
+    }
+
+    /**
+     * Waiting messages are routed in batches, so that every routee is scheduled once per batch.
+     */
+    private class InternalRouter extends BatchActor<RoutingType> {
         private InternalRouter(String name) {
             super(name != null ? name : "Router<" + generateUniqueString(Router.this) + ">");
         }
 
         @Override
-        protected void onMessage(RoutingType message) {
-            routingLogic.select(message, routees);
+        protected void onMessages(MessageBatch<RoutingType> messages) {
+            if (messages.size() == 1) {
+                routingLogic.select(messages.get(0), routees);
+            } else {
+                routingLogic.selectAll(messages, routees);
+            }
+        }
+
+        @Override
+        protected void postStop() {
+            synchronized (Router.this) {
+                stopped = true;
+                if (resizeTimer != null) {
+                    resizeTimer.cancel();
+                }
+                for (Actor<RouteeMessageType> actor : actors) {
+                    actor.requestStop();
+                }
+                for (Actor<RouteeMessageType> actor : retiredActors) {
+                    actor.requestStop();
+                }
+                retiredActors.clear();
+            }
+            // routees which didn't see the stop yet race for the rest of messages, each message is taken once
+            RouteeMessageType message;
+            while (sharedMailbox != null && (message = sharedMailbox.poll()) != null) {
+                actorSystem.deadLetter(message, Router.this.getActorRef());
+            }
         }
     }
 
-    void setActorSystem(ActorSystem actorSystem) {
-        internalRouter.setActorSystem(actorSystem);
+    void setActorSystem(ActorSystem actorSystem, Dispatcher dispatcher) {
+        this.actorSystem = actorSystem;
+        this.dispatcher = dispatcher;
+        internalRouter.setActorSystem(actorSystem, dispatcher);
         for (Actor<RouteeMessageType> actor : actors) {
-            actor.setActorSystem(actorSystem);
+            actor.setActorSystem(actorSystem, dispatcher);
+        }
+        if (resizer != null) {
+            final long interval = resizer.evaluationIntervalNanos;
+            resizeTimer = actorSystem.scheduleAtFixedRate(interval, interval, TimeUnit.NANOSECONDS,
+                    message -> resize(), Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Is called periodically by the timer of the actor system. New lists of routees are published at once,
+     * routing which already read the previous list can still send a message to a removed routee, so removed
+     * routees are stopped only when their mailbox gets empty.
+     */
+    synchronized void resize() {
+        if (stopped) {
+            return;
+        }
+        stopRetiredActors();
+
+        final List<Routee<RouteeMessageType>> current = routees;
+        final int poolSize = current.size();
+        long pressure = 0;
+        if (sharedMailbox != null) {
+            pressure = sharedMailbox.size();
+        } else {
+            for (int r = 0; r < poolSize; r++) {
+                pressure += current.get(r).getMailboxSize();
+            }
+        }
+
+        final int capacityToAdd = resizer.capacityToAdd(poolSize, pressure);
+        if (capacityToAdd > 0) {
+            idleSince = -1;
+            List<Actor<RouteeMessageType>> newActors = new ArrayList<>(actors);
+            for (int r = 0; r < capacityToAdd; r++) {
+                Actor<RouteeMessageType> actor = actorFactory.get();
+                prepareRoutee(actor);
+                actor.setActorSystem(actorSystem, dispatcher);
+                newActors.add(actor);
+            }
+            publish(newActors);
+            logger.debug("Router {} grew to {} routees", internalRouter.getName(), newActors.size());
+        } else if (pressure == 0) {
+            final long now = System.nanoTime();
+            if (idleSince < 0) {
+                idleSince = now;
+            } else if (now - idleSince >= resizer.idleCooldownNanos && poolSize > resizer.lowerBound) {
+                List<Actor<RouteeMessageType>> newActors = new ArrayList<>(actors);
+                retiredActors.add(newActors.remove(newActors.size() - 1));
+                publish(newActors);
+                logger.debug("Router {} shrank to {} routees", internalRouter.getName(), newActors.size());
+            }
+        } else {
+            idleSince = -1;
+        }
+    }
+
+    private void stopRetiredActors() {
+        for (int a = retiredActors.size() - 1; a >= 0; a--) {
+            Actor<RouteeMessageType> actor = retiredActors.get(a);
+            if (!actor.hasWork()) {
+                actor.requestStop();
+                retiredActors.remove(a);
+            }
+        }
+    }
+
+    private void publish(List<Actor<RouteeMessageType>> newActors) {
+        List<Routee<RouteeMessageType>> newRoutees = new ArrayList<>(newActors.size());
+        for (Actor<RouteeMessageType> actor : newActors) {
+            newRoutees.add(actor.getRoutee());
         }
+        this.actors = newActors;
+        this.routees = newRoutees;
     }
 
     ActorRef<RoutingType> getActorRef() {
-        return internalRouter.getActorRef();
+        return callerThreadRef != null ? callerThreadRef : internalRouter.getActorRef();
     }
 
     // TODO managemet messages - https://doc.akka.io/docs/akka/current/routing.html#router-usage ?
@@ -198,13 +903,21 @@ public final class Router<RouteeMessageType, RoutingType extends RouteeMessageTy
 
     private void init(RoutingLogic<RouteeMessageType, RoutingType> routingLogic, List<Actor<RouteeMessageType>> actors, String name) {
         this.routingLogic = routingLogic;
-        this.routees = new ArrayList<>(actors.size());
-        this.actors = new ArrayList<>(actors.size());
         this.internalRouter = new InternalRouter(name);
+        if (routingLogic.isSharedMailbox()) {
+            this.sharedMailbox = new SizeTrackingMailbox<>(new MpmcUnboundedXaddArrayQueue<>(SHARED_MAILBOX_CHUNK_SIZE));
+        }
         for (int r = 0; r < actors.size(); r++) {
-            Actor<RouteeMessageType> actor = actors.get(r);
-            routees.add(actor.getRoutee());
-            this.actors.add(actor);
+            prepareRoutee(actors.get(r));
+        }
+        publish(new ArrayList<>(actors));
+    }
+
+    private void prepareRoutee(Actor<RouteeMessageType> actor) {
+        if (sharedMailbox != null) {
+            actor.shareMailbox(sharedMailbox);
+        } else if (routingLogic.isMailboxSizeTracked()) {
+            actor.trackMailboxSize();
         }
     }
 }
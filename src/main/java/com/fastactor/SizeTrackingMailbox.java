@@ -0,0 +1,78 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Mailbox which counts its messages, so its size is O(1) even when size of the underlying queue is O(n),
+ * e.g. {@link org.jctools.queues.MpscLinkedQueue} walks the whole list. It's used by routees, whose mailbox size
+ * is read by routing logics for every message, other actors don't pay for the counter.
+ * <p>
+ * The size is approximate while messages are being enqueued or dequeued concurrently.
+ *
+ * @param <MessageType> base type of actor messages
+ */
+final class SizeTrackingMailbox<MessageType> extends AbstractQueue<MessageType> {
+    private final Queue<MessageType> queue;
+    private final AtomicInteger size = new AtomicInteger();
+
+    SizeTrackingMailbox(Queue<MessageType> queue) {
+        this.queue = queue;
+    }
+
+    @Override
+    public boolean offer(MessageType message) {
+        if (queue.offer(message)) {
+            size.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public MessageType poll() {
+        MessageType message = queue.poll();
+        if (message != null) {
+            size.decrementAndGet();
+        }
+        return message;
+    }
+
+    @Override
+    public MessageType peek() {
+        return queue.peek();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    /**
+     * @return approximate number of messages, it is never negative
+     */
+    @Override
+    public int size() {
+        return Math.max(size.get(), 0);
+    }
+
+    @Override
+    public Iterator<MessageType> iterator() {
+        return queue.iterator();
+    }
+}
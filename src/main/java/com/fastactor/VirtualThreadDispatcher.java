@@ -0,0 +1,148 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fastactor;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Dispatcher for actors which block, e.g. by {@link Thread#sleep(long)}, JDBC or file I/O. Every run of an actor
+ * gets its own virtual thread, so a blocked actor doesn't hold a thread shared with other actors. An actor
+ * is still run by one thread at a time.
+ * <p>
+ * Virtual threads are available since Java 21. On older runtimes the dispatcher falls back to a cached pool
+ * of platform threads, which grows with the number of blocked actors.
+ */
+public final class VirtualThreadDispatcher implements Dispatcher {
+    private static final Logger logger = LogManager.getLogger(VirtualThreadDispatcher.class);
+    private static final long MAX_QUIESCENCE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private final ExecutorService executor;
+    private final boolean virtual;
+    private final AtomicInteger runningTasks = new AtomicInteger();
+
+    /**
+     * Creates a new dispatcher.
+     *
+     * @param threadNamePrefix prefix of names of threads, the name ends with index of the thread
+     */
+    public VirtualThreadDispatcher(String threadNamePrefix) {
+        ExecutorService virtualExecutor = newVirtualThreadExecutor(threadNamePrefix);
+        if (virtualExecutor != null) {
+            executor = virtualExecutor;
+            virtual = true;
+        } else {
+            logger.info("Virtual threads are not available, platform threads are used instead");
+            executor = Executors.newCachedThreadPool(newPlatformThreadFactory(threadNamePrefix));
+            virtual = false;
+        }
+    }
+
+    /**
+     * Creates a new dispatcher with threads named "Actor-Thread-Virtual-" + index.
+     */
+    public VirtualThreadDispatcher() {
+        this("Actor-Thread-Virtual-");
+    }
+
+    /**
+     * @return true if actors are run by virtual threads, false if the runtime doesn't support them
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    @Override
+    public void dispatch(Actor<?> actor, Runnable task) {
+        runningTasks.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    runningTasks.decrementAndGet();
+                }
+            });
+        } catch (RuntimeException e) {
+            runningTasks.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Blocking an actor doesn't block other actors of this dispatcher, so waiting inside an actor is allowed.
+     *
+     * @return always false
+     */
+    @Override
+    public boolean isDispatcherThread() {
+        return false;
+    }
+
+    @Override
+    public boolean awaitQuiescence(long timeout, TimeUnit unit) {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long parkNanos = 1;
+        while (runningTasks.get() != 0) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(Math.min(parkNanos, remaining));
+            parkNanos = Math.min(parkNanos << 1, MAX_QUIESCENCE_PARK_NANOS);
+        }
+        return true;
+    }
+
+    /**
+     * Already dispatched tasks are run, then the threads terminate.
+     */
+    @Override
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Executor is created reflectively, so the library still compiles and runs on Java 11.
+     */
+    private static ExecutorService newVirtualThreadExecutor(String threadNamePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, threadNamePrefix, 0L);
+            ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, threadFactory);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.debug("Virtual threads cannot be created", e);
+            return null;
+        }
+    }
+
+    private static ThreadFactory newPlatformThreadFactory(String threadNamePrefix) {
+        final AtomicLong index = new AtomicLong();
+        return runnable -> {
+            Thread thread = new Thread(runnable, threadNamePrefix + index.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -2,10 +2,20 @@ package com.fastactor;
 
 import org.jctools.queues.MpscLinkedQueue;
 import org.jctools.queues.MpscUnboundedArrayQueue;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 class ActorSystemBasicTest {
     final Integer messageCount = 1_000_000;
@@ -37,4 +47,204 @@ class ActorSystemBasicTest {
                 countDownLatch, "Ping", "Pong"));
         countDownLatch.await();
     }
-}
\ No newline at end of file
+
+    @Test
+    void throughput() throws InterruptedException {
+        int floodSize = 1000;
+        int throughput = 10;
+        ActorSystem actorSystem = new ActorSystem(1, throughput);
+        AtomicInteger processedByFlooded = new AtomicInteger();
+        BlockingQueue<Integer> observed = new LinkedBlockingDeque<>();
+
+        ActorRef<Integer> observer = actorSystem.actorOf(new Actor<Integer>() {
+            @Override
+            protected void onMessage(Integer message) {
+                observed.offer(processedByFlooded.get());
+            }
+        });
+        ActorRef<Integer> flooded = actorSystem.actorOf(new Actor<Integer>() {
+            @Override
+            protected void onMessage(Integer message) {
+                if (processedByFlooded.incrementAndGet() == 1) {
+                    observer.tell(message);
+                }
+            }
+        });
+        actorSystem.actorOf(new Actor<Integer>() {
+            @Override
+            protected void preStart() {
+                for (int m = 0; m < floodSize; m++) {
+                    flooded.tell(m);
+                }
+            }
+
+            @Override
+            protected void onMessage(Integer message) {
+            }
+        });
+
+        Assertions.assertEquals(throughput, observed.take());
+    }
+
+    /**
+     * The default system runs LIFO, an actor with its own throughput must still be queued behind actors
+     * it scheduled and behind actors submitted from outside of the pool.
+     */
+    @Test
+    void actorThroughputInDefaultSystem() throws InterruptedException {
+        int floodSize = 1000;
+        int throughput = 10;
+        ActorSystem actorSystem = new ActorSystem(1);
+        AtomicInteger processedByFlooded = new AtomicInteger();
+        BlockingQueue<Integer> observedLocal = new LinkedBlockingDeque<>();
+        BlockingQueue<Integer> observedExternal = new LinkedBlockingDeque<>();
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ActorRef<Integer> localObserver = actorSystem.actorOf(new Actor<Integer>() {
+            @Override
+            protected void onMessage(Integer message) {
+                observedLocal.offer(processedByFlooded.get());
+            }
+        });
+        ActorRef<Integer> externalObserver = actorSystem.actorOf(new Actor<Integer>() {
+            @Override
+            protected void onMessage(Integer message) {
+                observedExternal.offer(processedByFlooded.get());
+            }
+        });
+        ActorRef<Integer> flooded = actorSystem.actorOf(new Actor<Integer>() {
+            {
+                setThroughput(throughput);
+            }
+
+            @Override
+            protected void onMessage(Integer message) {
+                if (processedByFlooded.incrementAndGet() == 1) {
+                    localObserver.tell(message);
+                    blocked.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        });
+        for (int m = 0; m < floodSize; m++) {
+            flooded.tell(m);
+        }
+        Assertions.assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        externalObserver.tell(0);
+        release.countDown();
+
+        Assertions.assertEquals(throughput, observedLocal.take());
+        Assertions.assertTrue(observedExternal.take() < floodSize);
+    }
+
+    @Test
+    void broadcastTellAll() throws InterruptedException {
+        int poolSize = 4;
+        List<Integer> messages = new ArrayList<>();
+        for (int m = 0; m < 1000; m++) {
+            messages.add(m);
+        }
+
+        ActorSystem actorSystem = new ActorSystem(threadPoolSize);
+        BlockingQueue<List<Integer>> received = new LinkedBlockingDeque<>();
+        ActorRef<Integer> router = actorSystem.actorOf(new Router<>(new Router.BroadcastRoutingLogic<>(),
+                () -> new Actor<Integer>() {
+                    private final List<Integer> routeeMessages = new ArrayList<>();
+
+                    @Override
+                    protected void onMessage(Integer message) {
+                        routeeMessages.add(message);
+                        if (routeeMessages.size() == messages.size()) {
+                            received.offer(routeeMessages);
+                        }
+                    }
+                }, poolSize));
+
+        router.tellAll(messages.subList(0, 500));
+        router.tellAll(messages.subList(500, 1000).toArray(new Integer[0]));
+
+        for (int r = 0; r < poolSize; r++) {
+            Assertions.assertEquals(messages, received.take());
+        }
+    }
+
+    @Test
+    void batchActor() throws InterruptedException {
+        int maxBatchSize = 64;
+        List<Integer> messages = new ArrayList<>();
+        for (int m = 0; m < 10_000; m++) {
+            messages.add(m);
+        }
+
+        ActorSystem actorSystem = new ActorSystem(threadPoolSize);
+        CountDownLatch countDownLatch = new CountDownLatch(1);
+        List<Integer> received = new ArrayList<>();
+        List<Integer> batchSizes = new ArrayList<>();
+        ActorRef<Integer> ref = actorSystem.actorOf(new BatchActor<Integer>("Batch", maxBatchSize) {
+            @Override
+            protected void onMessages(MessageBatch<Integer> batch) {
+                batchSizes.add(batch.size());
+                received.addAll(batch);
+                if (received.size() == messages.size()) {
+                    countDownLatch.countDown();
+                }
+            }
+        });
+        ref.tellAll(messages);
+
+        countDownLatch.await();
+        Assertions.assertEquals(messages, received);
+        Assertions.assertTrue(batchSizes.stream().allMatch(size -> size > 0 && size <= maxBatchSize));
+    }
+
+    @Test
+    void ask() throws InterruptedException, ExecutionException {
+        ActorSystem actorSystem = new ActorSystem(threadPoolSize);
+        ActorRef<ActorRef<Integer>> counter = actorSystem.actorOf(new Actor<ActorRef<Integer>>() {
+            private int count;
+
+            @Override
+            protected void onMessage(ActorRef<Integer> replyTo) {
+                replyTo.tell(++count);
+                replyTo.tell(-1);
+            }
+        });
+
+        List<CompletableFuture<Integer>> replies = new ArrayList<>();
+        for (int r = 0; r < 100; r++) {
+            replies.add(counter.ask(replyTo -> replyTo, 10, TimeUnit.SECONDS));
+        }
+        for (int r = 0; r < 100; r++) {
+            Assertions.assertEquals(r + 1, replies.get(r).get());
+            // the reply cancels its timeout, so the timer doesn't keep it
+            Assertions.assertTrue(((AskReplyRef<Integer>) replies.get(r)).timeout.isCancelled());
+        }
+    }
+
+    @Test
+    void askTimeout() {
+        ActorSystem actorSystem = new ActorSystem(threadPoolSize);
+        ActorRef<ActorRef<Integer>> silent = actorSystem.actorOf(new Actor<ActorRef<Integer>>() {
+            @Override
+            protected void onMessage(ActorRef<Integer> replyTo) {
+            }
+        });
+
+        CompletableFuture<Integer> reply = silent.ask(replyTo -> replyTo, 10, TimeUnit.MILLISECONDS);
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class, reply::get);
+        Assertions.assertTrue(e.getCause() instanceof TimeoutException);
+
+        // the requester which gives up cancels the timeout too
+        CompletableFuture<Integer> cancelled = silent.ask(replyTo -> replyTo, 10, TimeUnit.SECONDS);
+        Assertions.assertTrue(cancelled.cancel(false));
+        Assertions.assertTrue(((AskReplyRef<Integer>) cancelled).timeout.isCancelled());
+        CompletableFuture<Integer> failed = silent.ask(replyTo -> replyTo, 10, TimeUnit.SECONDS);
+        Assertions.assertTrue(failed.completeExceptionally(new IllegalStateException()));
+        Assertions.assertTrue(((AskReplyRef<Integer>) failed).timeout.isCancelled());
+    }
+}
@@ -0,0 +1,115 @@
+package com.fastactor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+
+class BoundedMailboxTest {
+    final int capacity = 4;
+
+    /**
+     * Records received messages, processing of the first message waits until the gate is opened,
+     * so the following messages stay in the mailbox.
+     */
+    static class GatedActor extends Actor<Integer> {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch gate = new CountDownLatch(1);
+        final BlockingQueue<Integer> received = new LinkedBlockingDeque<>();
+
+        GatedActor(int capacity, OverflowStrategy overflowStrategy) {
+            super("Gated", capacity, overflowStrategy);
+        }
+
+        @Override
+        protected void onMessage(Integer message) {
+            started.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.offer(message);
+        }
+
+        List<Integer> take(int count) throws InterruptedException {
+            List<Integer> messages = new ArrayList<>(count);
+            for (int m = 0; m < count; m++) {
+                messages.add(received.take());
+            }
+            return messages;
+        }
+    }
+
+    private ActorRef<Integer> fill(ActorSystem actorSystem, GatedActor actor) throws InterruptedException {
+        ActorRef<Integer> ref = actorSystem.actorOf(actor);
+        ref.tell(0);
+        actor.started.await();
+        for (int m = 1; m <= capacity; m++) {
+            Assertions.assertTrue(ref.tryTell(m));
+        }
+        return ref;
+    }
+
+    @Test
+    void dropNewest() throws InterruptedException {
+        GatedActor actor = new GatedActor(capacity, OverflowStrategy.DROP_NEWEST);
+        ActorRef<Integer> ref = fill(new ActorSystem(1), actor);
+
+        Assertions.assertFalse(ref.tryTell(capacity + 1));
+        ref.tell(capacity + 2);
+        actor.gate.countDown();
+        Assertions.assertEquals(List.of(0, 1, 2, 3, 4), actor.take(capacity + 1));
+
+        ref.tell(capacity + 3);
+        Assertions.assertEquals(List.of(capacity + 3), actor.take(1));
+    }
+
+    @Test
+    void dropOldest() throws InterruptedException {
+        GatedActor actor = new GatedActor(capacity, OverflowStrategy.DROP_OLDEST);
+        ActorRef<Integer> ref = fill(new ActorSystem(1), actor);
+
+        Assertions.assertTrue(ref.tryTell(capacity + 1));
+        ref.tell(capacity + 2);
+        actor.gate.countDown();
+
+        Assertions.assertEquals(List.of(0, 3, 4, capacity + 1, capacity + 2), actor.take(capacity + 1));
+    }
+
+    @Test
+    void fail() throws InterruptedException {
+        GatedActor actor = new GatedActor(capacity, OverflowStrategy.FAIL);
+        ActorRef<Integer> ref = fill(new ActorSystem(1), actor);
+
+        Assertions.assertFalse(ref.tryTell(capacity + 1));
+        Assertions.assertThrows(IllegalStateException.class, () -> ref.tell(capacity + 1));
+        actor.gate.countDown();
+
+        Assertions.assertEquals(List.of(0, 1, 2, 3, 4), actor.take(capacity + 1));
+    }
+
+    @Test
+    void block() throws InterruptedException {
+        GatedActor actor = new GatedActor(capacity, OverflowStrategy.BLOCK);
+        ActorRef<Integer> ref = fill(new ActorSystem(1), actor);
+
+        Thread producer = new Thread(() -> ref.tell(capacity + 1));
+        producer.start();
+        producer.join(100);
+        Assertions.assertTrue(producer.isAlive());
+
+        actor.gate.countDown();
+        producer.join();
+        Assertions.assertEquals(List.of(0, 1, 2, 3, 4, capacity + 1), actor.take(capacity + 2));
+    }
+
+    @Test
+    void invalidCapacity() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new GatedActor(0, OverflowStrategy.DROP_NEWEST));
+    }
+}
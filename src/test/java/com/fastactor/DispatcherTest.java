@@ -0,0 +1,167 @@
+package com.fastactor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+class DispatcherTest {
+
+    @Test
+    void callingThreadFibonacci() {
+        ActorSystem actorSystem = new ActorSystem(new CallingThreadDispatcher());
+        BlockingQueue<Long> results = new LinkedBlockingDeque<>();
+        actorSystem.actorOf(new Fibonacci("Fibonacci-15")).tell(new Fibonacci.Compute(15, results));
+
+        Assertions.assertEquals(610L, results.poll());
+    }
+
+    @Test
+    void callingThreadPreservesOrder() {
+        ActorSystem actorSystem = new ActorSystem(new CallingThreadDispatcher());
+        StringBuilder trace = new StringBuilder();
+        ActorRef<String> second = actorSystem.actorOf(new Actor<String>() {
+            @Override
+            protected void onMessage(String message) {
+                trace.append(message);
+            }
+        });
+        ActorRef<String> first = actorSystem.actorOf(new Actor<String>() {
+            @Override
+            protected void onMessage(String message) {
+                second.tell("b");
+                trace.append(message);
+            }
+        });
+        first.tell("a");
+
+        Assertions.assertEquals("ab", trace.toString());
+    }
+
+    @Test
+    void dedicatedDispatcher() throws InterruptedException {
+        ActorSystem actorSystem = new ActorSystem(1);
+        Dispatcher dedicated = new ForkJoinDispatcher("Dedicated-", 1);
+        BlockingQueue<String> threadNames = new LinkedBlockingDeque<>();
+        Actor<String> actor = new Actor<String>() {
+            @Override
+            protected void onMessage(String message) {
+                threadNames.offer(Thread.currentThread().getName());
+            }
+        };
+        ActorRef<String> ref = actorSystem.actorOf(new Actor<String>() {
+            @Override
+            protected void onMessage(String message) {
+                threadNames.offer(Thread.currentThread().getName());
+            }
+        });
+        actorSystem.actorOf(actor, dedicated).tell("dedicated");
+        ref.tell("default");
+
+        String first = threadNames.take();
+        String second = threadNames.take();
+        Assertions.assertTrue(first.startsWith("Dedicated-") != second.startsWith("Dedicated-"));
+        Assertions.assertTrue(first.startsWith("Actor-Thread-User-") || second.startsWith("Actor-Thread-User-"));
+    }
+
+    @Test
+    void virtualThreadSleepingActors() throws InterruptedException {
+        int messageCount = 10;
+        int actorPingCount = 100;
+        int sleepTime = 10;
+
+        ActorSystem actorSystem = new ActorSystem(1);
+        Dispatcher blockingDispatcher = new VirtualThreadDispatcher();
+
+        CountDownLatch countDownLatch = new CountDownLatch(actorPingCount);
+        for (int a = 0; a < actorPingCount; a++) {
+            actorSystem.actorOf(new Ping(messageCount, countDownLatch, sleepTime, "Ping-" + a, "Pong-" + a),
+                    blockingDispatcher);
+        }
+
+        // sequentially on one shared thread it would take at least 10 seconds
+        Assertions.assertTrue(countDownLatch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void virtualThreadOneRunAtTime() throws InterruptedException {
+        int messageCount = 200;
+        ActorSystem actorSystem = new ActorSystem(new VirtualThreadDispatcher());
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch countDownLatch = new CountDownLatch(messageCount);
+        ActorRef<Integer> ref = actorSystem.actorOf(new Actor<Integer>() {
+            @Override
+            protected void onMessage(Integer message) {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.yield();
+                running.decrementAndGet();
+                countDownLatch.countDown();
+            }
+        });
+        for (int m = 0; m < messageCount; m++) {
+            ref.tell(m);
+        }
+
+        countDownLatch.await();
+        Assertions.assertTrue(actorSystem.waitOnIdle(1, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    void eventLoopIdleStrategies() throws InterruptedException {
+        eventLoopPingPong(IdleStrategy.BusySpin::new);
+        eventLoopPingPong(IdleStrategy.Yielding::new);
+        eventLoopPingPong(IdleStrategy.Backoff::new);
+    }
+
+    private void eventLoopPingPong(Supplier<IdleStrategy> idleStrategyFactory) throws InterruptedException {
+        int messageCount = 1000;
+        int actorPingCount = 10;
+        EventLoopDispatcher dispatcher = new EventLoopDispatcher("Event-Loop-", 2, idleStrategyFactory);
+        try {
+            ActorSystem actorSystem = new ActorSystem(dispatcher);
+            CountDownLatch countDownLatch = new CountDownLatch(actorPingCount);
+            for (int a = 0; a < actorPingCount; a++) {
+                actorSystem.actorOf(new Ping(messageCount, countDownLatch, "Ping-" + a, "Pong-" + a, 1));
+            }
+
+            countDownLatch.await();
+            Assertions.assertTrue(actorSystem.waitOnIdle(5, TimeUnit.SECONDS));
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    void eventLoopOwnsActor() throws InterruptedException {
+        EventLoopDispatcher dispatcher = new EventLoopDispatcher("Event-Loop-", 4, IdleStrategy.Backoff::new);
+        try {
+            ActorSystem actorSystem = new ActorSystem(dispatcher);
+            BlockingQueue<Boolean> results = new LinkedBlockingDeque<>();
+            ActorRef<Integer> ref = actorSystem.actorOf(new Actor<Integer>() {
+                private Thread owner;
+
+                @Override
+                protected void onMessage(Integer message) {
+                    if (owner == null) {
+                        owner = Thread.currentThread();
+                    }
+                    results.offer(owner == Thread.currentThread() && dispatcher.isDispatcherThread());
+                }
+            });
+            for (int m = 0; m < 100; m++) {
+                ref.tell(m);
+                Assertions.assertTrue(results.take());
+            }
+            Assertions.assertFalse(dispatcher.isDispatcherThread());
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+}
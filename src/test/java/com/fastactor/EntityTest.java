@@ -0,0 +1,183 @@
+package com.fastactor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+class EntityTest {
+
+    private static class Counter extends Entity<String, Integer> {
+        private final BlockingQueue<String> counts;
+        private long count;
+
+        Counter(BlockingQueue<String> counts) {
+            this.counts = counts;
+        }
+
+        @Override
+        protected void onMessage(Integer message) {
+            count += message;
+            counts.offer(getKey() + ":" + count);
+        }
+
+        @Override
+        protected byte[] saveState() {
+            return ByteBuffer.allocate(Long.BYTES).putLong(count).array();
+        }
+
+        @Override
+        protected void restoreState(byte[] state) {
+            count = state != null ? ByteBuffer.wrap(state).getLong() : 0;
+        }
+    }
+
+    @Test
+    void passivationAndReactivation() throws InterruptedException {
+        ActorSystem actorSystem = new ActorSystem(2);
+        BlockingQueue<String> counts = new LinkedBlockingDeque<>();
+        OffHeapEntityStore<String> store = new OffHeapEntityStore<>();
+        EntityRegion<String, Integer> region = new EntityRegion<>(actorSystem, key -> new Counter(counts), store,
+                50, TimeUnit.MILLISECONDS);
+        ActorRef<Integer> a = region.entityRef("a");
+
+        a.tell(1);
+        a.tell(2);
+        region.tell("b", 10);
+        Assertions.assertTrue(waitFor(() -> counts.contains("a:3") && counts.contains("b:10")));
+        Assertions.assertEquals(2, region.getActiveEntitiesNumber());
+
+        Assertions.assertTrue(waitFor(() -> region.getActiveEntitiesNumber() == 0));
+        Assertions.assertEquals(2, store.getStatesNumber());
+        Assertions.assertEquals(2 * Long.BYTES, store.getSize());
+        counts.clear();
+
+        a.tell(4);
+        Assertions.assertEquals("a:7", counts.poll(5, TimeUnit.SECONDS));
+        region.tell("b", 1);
+        Assertions.assertEquals("b:11", counts.poll(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(2, region.getActiveEntitiesNumber());
+    }
+
+    @Test
+    void messagesWaitForRestoredState() throws InterruptedException {
+        ActorSystem actorSystem = new ActorSystem(2);
+        BlockingQueue<String> counts = new LinkedBlockingDeque<>();
+        AtomicInteger created = new AtomicInteger();
+        OffHeapEntityStore<String> offHeap = new OffHeapEntityStore<>();
+        offHeap.save("a", ByteBuffer.allocate(Long.BYTES).putLong(1000).array());
+        EntityStore<String> slowStore = new EntityStore<String>() {
+            @Override
+            public void save(String key, byte[] state) {
+                offHeap.save(key, state);
+            }
+
+            @Override
+            public byte[] load(String key) {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return offHeap.load(key);
+            }
+
+            @Override
+            public void remove(String key) {
+                offHeap.remove(key);
+            }
+        };
+        EntityRegion<String, Integer> region = new EntityRegion<>(actorSystem, key -> {
+            created.incrementAndGet();
+            return new Counter(counts);
+        }, slowStore, 1, TimeUnit.MINUTES);
+
+        int producers = 4;
+        int messageCount = 1000;
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            threads[p] = new Thread(() -> {
+                for (int m = 0; m < messageCount; m++) {
+                    region.tell("a", 1);
+                }
+            });
+            threads[p].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assertions.assertEquals("a:1001", counts.poll(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(waitFor(() -> counts.size() == producers * messageCount - 1));
+        Assertions.assertEquals(1, region.getActiveEntitiesNumber());
+        Assertions.assertTrue(created.get() >= 1);
+        Assertions.assertTrue(counts.contains("a:" + (1000 + producers * messageCount)));
+    }
+
+    @Test
+    void terminateSavesActiveEntities() throws InterruptedException {
+        ActorSystem actorSystem = new ActorSystem(2);
+        BlockingQueue<String> counts = new LinkedBlockingDeque<>();
+        OffHeapEntityStore<String> store = new OffHeapEntityStore<>();
+        EntityRegion<String, Integer> region = new EntityRegion<>(actorSystem, key -> new Counter(counts), store,
+                1, TimeUnit.MINUTES);
+        region.tell("a", 5);
+        Assertions.assertEquals("a:5", counts.poll(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(0, store.getStatesNumber());
+
+        Assertions.assertTrue(actorSystem.terminate(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(0, region.getActiveEntitiesNumber());
+        Assertions.assertEquals(5, ByteBuffer.wrap(store.load("a")).getLong());
+    }
+
+    @Test
+    void offHeapStoreCompaction() {
+        int slabSize = 1024;
+        OffHeapEntityStore<Integer> store = new OffHeapEntityStore<>(slabSize);
+        int keys = 100;
+        for (int round = 0; round < 50; round++) {
+            for (int key = 0; key < keys; key++) {
+                store.save(key, ByteBuffer.allocate(Long.BYTES).putLong(round * 1000L + key).array());
+            }
+        }
+        for (int key = 0; key < keys; key++) {
+            Assertions.assertEquals(49_000L + key, ByteBuffer.wrap(store.load(key)).getLong());
+        }
+        Assertions.assertEquals(keys, store.getStatesNumber());
+        Assertions.assertEquals(keys * Long.BYTES, store.getSize());
+        // live states take 1200 bytes, holes are compacted when they exceed them
+        Assertions.assertTrue(store.getSlabsNumber() <= 4, store.getSlabsNumber() + " slabs");
+        // released slabs leave their indexes to new ones
+        Assertions.assertTrue(store.getSlabIndexesNumber() <= 5, store.getSlabIndexesNumber() + " slab indexes");
+
+        for (int key = 0; key < keys; key++) {
+            store.remove(key);
+        }
+        Assertions.assertNull(store.load(0));
+        Assertions.assertEquals(0, store.getSize());
+        Assertions.assertTrue(store.getSlabsNumber() <= 1);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> store.save(0, new byte[slabSize]));
+    }
+
+    @Test
+    void invalidIdleTimeout() {
+        ActorSystem actorSystem = new ActorSystem(new CallingThreadDispatcher());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new EntityRegion<String, Integer>(actorSystem,
+                key -> new Counter(new LinkedBlockingDeque<>()), new OffHeapEntityStore<>(), 0, TimeUnit.SECONDS));
+    }
+
+    private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 5000; i++) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            Thread.sleep(1);
+        }
+        return condition.getAsBoolean();
+    }
+}
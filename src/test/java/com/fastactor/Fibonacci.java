@@ -70,6 +70,7 @@ public class Fibonacci extends Actor<Fibonacci.Command> {
         sender = compute.sender;
         if (n == 0 || n == 1) {
             compute.sender.tell(new InternalComputedResult(n));
+            stop(getSelf());
         } else {
             actorOf(new Fibonacci("Fibonacci-" + n + "-1")).tell(new InternalCompute(n - 1, getSelf()));
             actorOf(new Fibonacci("Fibonacci-" + n + "-2")).tell(new InternalCompute(n - 2, getSelf()));
@@ -81,8 +82,10 @@ public class Fibonacci extends Actor<Fibonacci.Command> {
             firstResult = computedResult.result;
         } else if (results != null) {
             results.offer(firstResult + computedResult.result);
+            stop(getSelf());
         } else {
             sender.tell(new InternalComputedResult(firstResult + computedResult.result));
+            stop(getSelf());
         }
     }
 }
@@ -0,0 +1,73 @@
+package com.fastactor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Set;
+
+class FootprintTest {
+    // layout of 64-bit HotSpot with compressed class pointers and compressed oops (heaps below 32 GB)
+    private static final int OBJECT_HEADER_SIZE = 12;
+    private static final int REFERENCE_SIZE = 4;
+    private static final int OBJECT_ALIGNMENT = 8;
+
+    private static class Idle extends Actor<Object> {
+        @Override
+        protected void onMessage(Object message) {
+        }
+    }
+
+    /**
+     * An idle actor retains the actor object, its ActorRef and the entry in the registry of the actor system.
+     * The size is estimated from the fields like JOL does, so it doesn't depend on the garbage collector.
+     */
+    @Test
+    void idleActorFootprint() throws IllegalAccessException {
+        ActorSystem actorSystem = new ActorSystem(new CallingThreadDispatcher());
+        Idle actor = new Idle();
+        actorSystem.actorOf(actor);
+
+        // everything else is created when it's needed, or it's shared by actors
+        Set<String> retained = Set.of("actorRef", "actorSystem", "dispatcher", "registration", "queueFactory",
+                "overflowStrategy");
+        for (Field field : Actor.class.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) && !field.getType().isPrimitive()
+                    && !retained.contains(field.getName())) {
+                field.setAccessible(true);
+                Assertions.assertNull(field.get(actor), field.getName() + " of an idle actor");
+            }
+        }
+
+        long bytesPerActor = shallowSize(Idle.class) + shallowSize(Actor.ActorRefImpl.class)
+                + shallowSize(ActorRegistry.Registration.class);
+        Assertions.assertEquals(1, actorSystem.getActorsNumber());
+        Assertions.assertTrue(bytesPerActor < 160, "retained " + bytesPerActor + " bytes per idle actor");
+    }
+
+    private static long shallowSize(Class<?> type) {
+        long size = OBJECT_HEADER_SIZE;
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    size += fieldSize(field.getType());
+                }
+            }
+        }
+        return (size + OBJECT_ALIGNMENT - 1) / OBJECT_ALIGNMENT * OBJECT_ALIGNMENT;
+    }
+
+    private static int fieldSize(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        } else if (type == int.class || type == float.class) {
+            return 4;
+        } else if (type == short.class || type == char.class) {
+            return 2;
+        } else if (type == boolean.class || type == byte.class) {
+            return 1;
+        }
+        return REFERENCE_SIZE;
+    }
+}
@@ -0,0 +1,109 @@
+package com.fastactor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+class IntrusiveMailboxTest {
+
+    private static final class Item extends Envelope {
+        final int producer;
+        final int sequence;
+
+        Item(int producer, int sequence) {
+            this.producer = producer;
+            this.sequence = sequence;
+        }
+    }
+
+    private static class SequenceActor extends Actor<Item> {
+        private final int[] lastSequences;
+        private final CountDownLatch latch;
+        private volatile boolean ordered = true;
+
+        SequenceActor(int producers, CountDownLatch latch) {
+            super("SequenceActor", IntrusiveMailbox::new);
+            this.lastSequences = new int[producers];
+            this.latch = latch;
+        }
+
+        @Override
+        protected void onMessage(Item message) {
+            if (message.sequence != lastSequences[message.producer] + 1) {
+                ordered = false;
+            }
+            lastSequences[message.producer] = message.sequence;
+            latch.countDown();
+        }
+    }
+
+    @Test
+    void fifo() {
+        IntrusiveMailbox<Item> mailbox = new IntrusiveMailbox<>();
+        Assertions.assertTrue(mailbox.isEmpty());
+        Assertions.assertNull(mailbox.poll());
+
+        Item first = new Item(0, 1);
+        Item second = new Item(0, 2);
+        mailbox.offer(first);
+        mailbox.offer(second);
+        Assertions.assertEquals(2, mailbox.size());
+        Assertions.assertTrue(mailbox.contains(second));
+        Assertions.assertEquals(List.of(first, second), List.copyOf(mailbox));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> mailbox.remove(second));
+        Assertions.assertSame(first, mailbox.peek());
+        Assertions.assertSame(first, mailbox.poll());
+        Assertions.assertFalse(mailbox.isEmpty());
+        Assertions.assertEquals(1, mailbox.size());
+        Assertions.assertEquals(2, mailbox.poll().sequence);
+        Assertions.assertTrue(mailbox.isEmpty());
+        Assertions.assertNull(mailbox.poll());
+
+        // a received message can be enqueued again
+        mailbox.offer(first);
+        Assertions.assertFalse(mailbox.isEmpty());
+        Assertions.assertSame(first, mailbox.poll());
+        Assertions.assertEquals(0, mailbox.size());
+    }
+
+    @Test
+    void manyProducers() throws InterruptedException {
+        int producers = 4;
+        int messageCount = 100_000;
+        ActorSystem actorSystem = new ActorSystem(2);
+        CountDownLatch latch = new CountDownLatch(producers * messageCount);
+        SequenceActor actor = new SequenceActor(producers, latch);
+        ActorRef<Item> ref = actorSystem.actorOf(actor);
+
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads[p] = new Thread(() -> {
+                for (int m = 1; m <= messageCount; m++) {
+                    ref.tell(new Item(producer, m));
+                }
+            });
+            threads[p].start();
+        }
+
+        Assertions.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assertions.assertTrue(actor.ordered);
+        Assertions.assertTrue(actor.getMailbox().isEmpty());
+    }
+
+    @Test
+    void limitedThroughput() throws InterruptedException {
+        ActorSystem actorSystem = new ActorSystem(2, 1);
+        CountDownLatch latch = new CountDownLatch(3);
+        SequenceActor actor = new SequenceActor(1, latch);
+        ActorRef<Item> ref = actorSystem.actorOf(actor);
+
+        ref.tellAll(List.of(new Item(0, 1), new Item(0, 2), new Item(0, 3)));
+
+        Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(actor.ordered);
+    }
+}
@@ -0,0 +1,240 @@
+package com.fastactor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+class LifecycleTest {
+
+    @Test
+    void stopSelf() throws InterruptedException {
+        ActorSystem actorSystem = new ActorSystem(new CallingThreadDispatcher());
+        BlockingQueue<Object> trace = new LinkedBlockingDeque<>();
+        actorSystem.setDeadLetters(trace::offer);
+        ActorRef<Integer> ref = actorSystem.actorOf(new Actor<Integer>() {
+            @Override
+            protected void onMessage(Integer message) {
+                trace.offer(message);
+                if (message == 2) {
+                    stop(getSelf());
+                }
+            }
+
+            @Override
+            protected void postStop() {
+                trace.offer("postStop");
+            }
+        });
+        Assertions.assertEquals(1, actorSystem.getActorsNumber());
+
+        ref.tellAll(List.of(1, 2, 3));
+        Assertions.assertFalse(ref.tryTell(4));
+
+        Assertions.assertEquals(1, trace.take());
+        Assertions.assertEquals(2, trace.take());
+        Assertions.assertEquals("postStop", trace.take());
+        DeadLetter waiting = (DeadLetter) trace.take();
+        Assertions.assertEquals(3, waiting.getMessage());
+        Assertions.assertSame(ref, waiting.getRecipient());
+        Assertions.assertEquals(4, ((DeadLetter) trace.take()).getMessage());
+        Assertions.assertEquals(0, actorSystem.getActorsNumber());
+    }
+
+    @Test
+    void stopBackloggedActor() throws InterruptedException {
+        ActorSystem actorSystem = new ActorSystem(1);
+        AtomicInteger deadLetters = new AtomicInteger();
+        actorSystem.setDeadLetters(deadLetter -> deadLetters.incrementAndGet());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch stopped = new CountDownLatch(1);
+        AtomicInteger processed = new AtomicInteger();
+        ActorRef<Integer> ref = actorSystem.actorOf(new Actor<Integer>() {
+            @Override
+            protected void onMessage(Integer message) {
+                started.countDown();
+                processed.incrementAndGet();
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+
+            @Override
+            protected void postStop() {
+                stopped.countDown();
+            }
+        });
+        for (int i = 0; i < 10_000; i++) {
+            ref.tell(i);
+        }
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+        actorSystem.stop(ref);
+
+        Assertions.assertTrue(stopped.await(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(actorSystem.waitOnIdle(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(processed.get() < 10_000);
+        Assertions.assertEquals(10_000, processed.get() + deadLetters.get());
+    }
+
+    @Test
+    void dispatchAfterShutdown() throws InterruptedException {
+        ActorSystem actorSystem = new ActorSystem(1);
+        BlockingQueue<DeadLetter> deadLetters = new LinkedBlockingDeque<>();
+        actorSystem.setDeadLetters(deadLetters::offer);
+        ForkJoinDispatcher dispatcher = new ForkJoinDispatcher("Shutdown-", 1);
+        ActorRef<Integer> ref = actorSystem.actorOf(new Actor<Integer>() {
+            @Override
+            protected void onMessage(Integer message) {
+            }
+        }, dispatcher);
+        Assertions.assertTrue(dispatcher.awaitQuiescence(5, TimeUnit.SECONDS));
+        dispatcher.shutdown();
+
+        ref.tell(1);
+        Assertions.assertEquals(1, deadLetters.poll(5, TimeUnit.SECONDS).getMessage());
+        Assertions.assertEquals(0, actorSystem.getActorsNumber());
+        ref.tell(2);
+        Assertions.assertEquals(2, deadLetters.poll(5, TimeUnit.SECONDS).getMessage());
+    }
+
+    @Test
+    void terminateLeavesTimeForStopping() {
+        ActorSystem actorSystem = new ActorSystem(1);
+        ActorRef<Integer> busy = actorSystem.actorOf(new Actor<Integer>() {
+            {
+                // a thread waiting for quiescence may run the actor, it returns after one message
+                setThroughput(1);
+            }
+
+            @Override
+            protected void onMessage(Integer message) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+            }
+        });
+        for (int m = 0; m < 1000; m++) {
+            busy.tell(m);
+        }
+
+        // the mailbox isn't drained in the timeout, but the actor is stopped after its current message
+        Assertions.assertFalse(actorSystem.terminate(400, TimeUnit.MILLISECONDS));
+        Assertions.assertEquals(0, actorSystem.getActorsNumber());
+    }
+
+    @Test
+    void stopCancelsTimers() throws InterruptedException {
+        ActorSystem actorSystem = new ActorSystem(1);
+        BlockingQueue<Object> deadLetters = new LinkedBlockingDeque<>();
+        actorSystem.setDeadLetters(deadLetters::offer);
+        CountDownLatch ticks = new CountDownLatch(2);
+        ActorRef<String> ref = actorSystem.actorOf(new Actor<String>() {
+            @Override
+            protected void preStart() {
+                startTimerAtFixedRate("tick", "tick", 10, 10, TimeUnit.MILLISECONDS);
+            }
+
+            @Override
+            protected void onMessage(String message) {
+                ticks.countDown();
+            }
+        });
+        Assertions.assertTrue(ticks.await(5, TimeUnit.SECONDS));
+        actorSystem.stop(ref);
+        Assertions.assertTrue(actorSystem.waitOnIdle(5, TimeUnit.SECONDS));
+        deadLetters.clear();
+
+        Assertions.assertNull(deadLetters.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void stopRouter() throws InterruptedException {
+        ActorSystem actorSystem = new ActorSystem(2);
+        CountDownLatch stopped = new CountDownLatch(4);
+        ActorRef<Integer> router = actorSystem.actorOf(new Router<>(new Router.RoundRobinRoutingLogic<>(),
+                () -> new Actor<Integer>() {
+                    @Override
+                    protected void onMessage(Integer message) {
+                    }
+
+                    @Override
+                    protected void postStop() {
+                        stopped.countDown();
+                    }
+                }, 4));
+        Assertions.assertEquals(5, actorSystem.getActorsNumber());
+
+        actorSystem.stop(router);
+
+        Assertions.assertTrue(stopped.await(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(actorSystem.waitOnIdle(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(0, actorSystem.getActorsNumber());
+    }
+
+    @Test
+    void terminate() {
+        ActorSystem actorSystem = new ActorSystem(2);
+        AtomicInteger processed = new AtomicInteger();
+        AtomicInteger postStops = new AtomicInteger();
+        // unreferenced actors could be garbage collected without postStop
+        List<ActorRef<Integer>> refs = new ArrayList<>();
+        for (int a = 0; a < 100; a++) {
+            ActorRef<Integer> ref = actorSystem.actorOf(new Actor<Integer>() {
+                @Override
+                protected void onMessage(Integer message) {
+                    processed.incrementAndGet();
+                }
+
+                @Override
+                protected void postStop() {
+                    postStops.incrementAndGet();
+                }
+            });
+            refs.add(ref);
+            for (int m = 0; m < 100; m++) {
+                ref.tell(m);
+            }
+        }
+
+        Assertions.assertTrue(actorSystem.terminate(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(actorSystem.isTerminated());
+        Assertions.assertEquals(100 * 100, processed.get());
+        Assertions.assertEquals(100, postStops.get());
+        Assertions.assertEquals(0, actorSystem.getActorsNumber());
+        Assertions.assertThrows(IllegalStateException.class, () -> actorSystem.actorOf(new Fibonacci("Fibonacci")));
+        Assertions.assertEquals(100, refs.size());
+    }
+
+    @Test
+    void unreferencedActorsAreCollected() throws InterruptedException {
+        ActorSystem actorSystem = new ActorSystem(2);
+        int actorCount = 1000;
+        List<WeakReference<Actor<Integer>>> collected = new ArrayList<>();
+        CountDownLatch processed = new CountDownLatch(actorCount);
+        for (int a = 0; a < actorCount; a++) {
+            Actor<Integer> actor = new Actor<Integer>() {
+                @Override
+                protected void onMessage(Integer message) {
+                    processed.countDown();
+                }
+            };
+            collected.add(new WeakReference<>(actor));
+            actorSystem.actorOf(actor).tell(a);
+        }
+        Assertions.assertTrue(processed.await(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(actorSystem.waitOnIdle(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 50 && actorSystem.getActorsNumber() > 0; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        Assertions.assertEquals(0, actorSystem.getActorsNumber());
+        for (WeakReference<Actor<Integer>> actor : collected) {
+            Assertions.assertNull(actor.get());
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.fastactor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class MessagePoolTest {
+
+    private static final class Count extends PooledMessage {
+        int value;
+        ActorRef<Count> sender;
+
+        @Override
+        protected void clear() {
+            sender = null;
+        }
+
+        int getValue() {
+            checkNotRecycled();
+            return value;
+        }
+    }
+
+    /**
+     * Replies by a new message from the pool, the received one is recycled.
+     */
+    private static class Counter extends Actor<Count> {
+        private final MessagePool<Count> pool;
+        private final CountDownLatch latch;
+
+        Counter(String name, MessagePool<Count> pool, CountDownLatch latch) {
+            super(name, IntrusiveMailbox::new);
+            this.pool = pool;
+            this.latch = latch;
+        }
+
+        @Override
+        protected void onMessage(Count message) {
+            if (message.getValue() == 0) {
+                latch.countDown();
+                return;
+            }
+            Count reply = pool.acquire();
+            reply.value = message.getValue() - 1;
+            reply.sender = getSelf();
+            message.sender.tell(reply);
+        }
+    }
+
+    /**
+     * Replies by the received message, so its ownership goes back to the sender.
+     */
+    private static class Echo extends Actor<Count> {
+        @Override
+        protected void onMessage(Count message) {
+            ActorRef<Count> sender = message.sender;
+            message.value--;
+            message.sender = getSelf();
+            sender.tell(message);
+        }
+    }
+
+    @Test
+    void steadyStateDoesNotAllocate() throws InterruptedException {
+        AtomicInteger created = new AtomicInteger();
+        MessagePool<Count> pool = new MessagePool<>(() -> {
+            created.incrementAndGet();
+            return new Count();
+        });
+        ActorSystem actorSystem = new ActorSystem(2);
+        CountDownLatch latch = new CountDownLatch(1);
+        ActorRef<Count> ping = actorSystem.actorOf(new Counter("Ping", pool, latch));
+        ActorRef<Count> pong = actorSystem.actorOf(new Counter("Pong", pool, latch));
+
+        Count first = pool.acquire();
+        first.value = 100_000;
+        first.sender = pong;
+        ping.tell(first);
+
+        Assertions.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        // messages only migrate between free lists of a few threads
+        Assertions.assertTrue(created.get() < 100, "created " + created.get());
+    }
+
+    @Test
+    void replyTransfersOwnership() throws InterruptedException {
+        MessagePool<Count> pool = new MessagePool<>(Count::new);
+        ActorSystem actorSystem = new ActorSystem(new CallingThreadDispatcher());
+        CountDownLatch latch = new CountDownLatch(1);
+        ActorRef<Count> counter = actorSystem.actorOf(new Counter("Counter", pool, latch));
+        ActorRef<Count> echo = actorSystem.actorOf(new Echo());
+
+        Count count = pool.acquire();
+        count.value = 1;
+        count.sender = counter;
+        echo.tell(count);
+
+        Assertions.assertEquals(0, latch.getCount());
+        // the counter recycled the message which was echoed back to it
+        Assertions.assertSame(count, pool.acquire());
+    }
+
+    @Test
+    void useAfterRecycle() {
+        Assertions.assertTrue(PooledMessage.CHECKS, "tests run with assertions");
+        MessagePool<Count> pool = new MessagePool<>(Count::new);
+        ActorSystem actorSystem = new ActorSystem(new CallingThreadDispatcher());
+        ActorRef<Count> counter = actorSystem.actorOf(new Counter("Counter", pool, new CountDownLatch(1)));
+
+        Count count = pool.acquire();
+        count.recycle();
+        Assertions.assertThrows(IllegalStateException.class, count::getValue);
+        Assertions.assertThrows(IllegalStateException.class, count::recycle);
+        Assertions.assertThrows(IllegalStateException.class, () -> counter.tell(count));
+
+        Count retained = pool.acquire();
+        Assertions.assertSame(count, retained);
+        retained.retain();
+        retained.recycle();
+    }
+}
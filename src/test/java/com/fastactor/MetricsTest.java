@@ -0,0 +1,150 @@
+package com.fastactor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+class MetricsTest {
+    final int messageCount = 1000;
+
+    static class FailingActor extends Actor<Integer> {
+        final CountDownLatch countDownLatch;
+
+        FailingActor(String name, CountDownLatch countDownLatch) {
+            super(name);
+            this.countDownLatch = countDownLatch;
+        }
+
+        @Override
+        protected void onMessage(Integer message) {
+            countDownLatch.countDown();
+            if (message % 100 == 0) {
+                throw new IllegalArgumentException("Failure for " + message);
+            }
+        }
+    }
+
+    @Test
+    void disabledByDefault() throws InterruptedException {
+        ActorSystem actorSystem = new ActorSystem(1);
+        CountDownLatch countDownLatch = new CountDownLatch(messageCount);
+        FailingActor actor = new FailingActor("Disabled", countDownLatch);
+        ActorRef<Integer> ref = actorSystem.actorOf(actor);
+        for (int m = 1; m <= messageCount; m++) {
+            ref.tell(m);
+        }
+
+        countDownLatch.await();
+        Assertions.assertFalse(actorSystem.getMetrics().isEnabled());
+        Assertions.assertEquals(0, actor.getMetrics().getMessagesProcessed());
+        Assertions.assertEquals(0, actorSystem.getMetrics().getMessagesEnqueued());
+    }
+
+    @Test
+    void countersAndHistograms() throws InterruptedException {
+        ActorSystem actorSystem = new ActorSystem(1);
+        actorSystem.getMetrics().setEnabled(true);
+        CountDownLatch countDownLatch = new CountDownLatch(messageCount);
+        FailingActor actor = new FailingActor("Enabled", countDownLatch);
+        ActorRef<Integer> ref = actorSystem.actorOf(actor);
+        for (int m = 1; m <= messageCount; m++) {
+            ref.tell(m);
+        }
+
+        countDownLatch.await();
+        Assertions.assertTrue(actorSystem.waitOnIdle(10, TimeUnit.SECONDS));
+        ActorMetrics metrics = actor.getMetrics();
+        Assertions.assertEquals(messageCount, metrics.getMessagesEnqueued());
+        Assertions.assertEquals(messageCount, metrics.getMessagesProcessed());
+        Assertions.assertEquals(0, metrics.getMailboxDepth());
+        Assertions.assertEquals(messageCount / 100, metrics.getExceptions());
+        Assertions.assertEquals(messageCount, metrics.getProcessingTimes().getCount());
+        Assertions.assertTrue(metrics.getScheduledRuns() >= metrics.getExceptions());
+        Assertions.assertEquals(metrics.getScheduledRuns() - metrics.getExceptions(),
+                metrics.getBatchSizes().getCount());
+
+        ActorSystemMetrics systemMetrics = actorSystem.getMetrics();
+        Assertions.assertEquals(messageCount, systemMetrics.getMessagesEnqueued());
+        Assertions.assertEquals(messageCount, systemMetrics.getMessagesProcessed());
+        Assertions.assertEquals(metrics.getScheduledRuns(), systemMetrics.getScheduledRuns());
+    }
+
+    @Test
+    void mailboxDepth() throws InterruptedException {
+        ActorSystem actorSystem = new ActorSystem(1);
+        actorSystem.getMetrics().setEnabled(true);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ActorRef<Integer> ref = actorSystem.actorOf(new Actor<Integer>() {
+            @Override
+            protected void onMessage(Integer message) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        ref.tell(0);
+        started.await();
+        actorSystem.getMetrics().setEnabled(false);
+        for (int m = 1; m <= 10; m++) {
+            ref.tell(m);
+        }
+        actorSystem.getMetrics().setEnabled(true);
+
+        // messages sent while metrics were disabled are counted too
+        Assertions.assertEquals(10, actorSystem.getMetrics().getMailboxDepth());
+        actorSystem.stop(ref);
+        release.countDown();
+        Assertions.assertTrue(actorSystem.waitOnIdle(10, TimeUnit.SECONDS));
+        // the rest of the mailbox went to dead letters
+        Assertions.assertEquals(0, actorSystem.getMetrics().getMailboxDepth());
+    }
+
+    @Test
+    void histogramPercentiles() {
+        Histogram histogram = new Histogram.SingleWriter();
+        for (long value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+
+        Assertions.assertEquals(100, histogram.getCount());
+        Assertions.assertEquals(50.5, histogram.getMean());
+        Assertions.assertEquals(63, histogram.getMedian());
+        Assertions.assertEquals(127, histogram.getMax());
+    }
+
+    @Test
+    void jmx() throws JMException, InterruptedException {
+        ActorSystem actorSystem = new ActorSystem(1);
+        CountDownLatch countDownLatch = new CountDownLatch(1);
+        FailingActor actor = new FailingActor("Exported", countDownLatch);
+        ActorRef<Integer> ref = actorSystem.actorOf(actor);
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName systemName = actorSystem.registerMBean("MetricsTest");
+        ObjectName actorName = actorSystem.registerMBean(actor);
+        try {
+            mBeanServer.setAttribute(systemName, new javax.management.Attribute("Enabled", true));
+            ref.tell(1);
+            countDownLatch.await();
+            Assertions.assertTrue(actorSystem.waitOnIdle(10, TimeUnit.SECONDS));
+
+            Assertions.assertEquals(1L, mBeanServer.getAttribute(actorName, "MessagesProcessed"));
+            Assertions.assertEquals(1L, mBeanServer.getAttribute(systemName, "MessagesEnqueued"));
+            CompositeData processingTimes = (CompositeData) mBeanServer.getAttribute(actorName, "ProcessingTimes");
+            Assertions.assertEquals(1L, processingTimes.get("count"));
+        } finally {
+            mBeanServer.unregisterMBean(systemName);
+            mBeanServer.unregisterMBean(actorName);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.fastactor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+class PersistentActorTest {
+
+    static class Deposit {
+        final long amount;
+        final ActorRef<Long> replyTo;
+
+        Deposit(long amount, ActorRef<Long> replyTo) {
+            this.amount = amount;
+            this.replyTo = replyTo;
+        }
+    }
+
+    private static class Account extends PersistentActor<Deposit, Long> implements PersistentActor.SnapshotCodec {
+        private long balance;
+        private int replayedEvents;
+        private boolean started;
+
+        Account(String id, EventJournal journal, int snapshotInterval) {
+            super(id, journal, snapshotInterval);
+        }
+
+        @Override
+        protected void preStart() {
+            started = true;
+        }
+
+        @Override
+        protected void onMessage(Deposit message) {
+            if (message.amount == 0) {
+                message.replyTo.tell(balance);
+            } else {
+                persist(message.amount, amount -> message.replyTo.tell(balance));
+            }
+        }
+
+        @Override
+        protected void onEvent(Long amount) {
+            balance += amount;
+            if (!started) {
+                replayedEvents++;
+            }
+        }
+
+        @Override
+        protected byte[] serializeEvent(Long amount) {
+            return ByteBuffer.allocate(Long.BYTES).putLong(amount).array();
+        }
+
+        @Override
+        protected Long deserializeEvent(byte[] bytes) {
+            return ByteBuffer.wrap(bytes).getLong();
+        }
+
+        @Override
+        public byte[] saveSnapshot() {
+            return ByteBuffer.allocate(Long.BYTES).putLong(balance).array();
+        }
+
+        @Override
+        public void restoreSnapshot(byte[] state) {
+            balance = ByteBuffer.wrap(state).getLong();
+        }
+    }
+
+    @Test
+    void persistAndRecover(@TempDir Path directory) throws Exception {
+        ActorSystem actorSystem = new ActorSystem(2);
+        int eventCount = 1000;
+        CountDownLatch persisted = new CountDownLatch(2 * eventCount);
+        ActorRef<Long> replies = balance -> persisted.countDown();
+
+        EventJournal journal = new EventJournal(directory);
+        ActorRef<Deposit> a = actorSystem.actorOf(new Account("a", journal, 0));
+        ActorRef<Deposit> b = actorSystem.actorOf(new Account("b", journal, 0));
+        for (int e = 1; e <= eventCount; e++) {
+            a.tell(new Deposit(e, replies));
+            b.tell(new Deposit(2 * e, replies));
+        }
+        Assertions.assertTrue(persisted.await(10, TimeUnit.SECONDS));
+        journal.close();
+        Assertions.assertThrows(IllegalStateException.class, () -> new Account("a", journal, 0).persist(1L));
+
+        EventJournal reopened = new EventJournal(directory);
+        Account recovered = new Account("a", reopened, 0);
+        ActorRef<Deposit> a2 = actorSystem.actorOf(recovered);
+        long sum = (long) eventCount * (eventCount + 1) / 2;
+        Assertions.assertEquals(sum, getBalance(a2));
+        Assertions.assertEquals(eventCount, recovered.replayedEvents);
+        Assertions.assertEquals(eventCount, recovered.getSequenceNr());
+
+        Assertions.assertEquals(sum + 5, a2.<Long>ask(replyTo -> new Deposit(5, replyTo), 5, TimeUnit.SECONDS).get());
+        reopened.close();
+    }
+
+    @Test
+    void segmentsAndSnapshots(@TempDir Path directory) throws Exception {
+        ActorSystem actorSystem = new ActorSystem(1);
+        EventJournal journal = new EventJournal(directory, 256);
+        ActorRef<Deposit> account = actorSystem.actorOf(new Account("account", journal, 10));
+        for (int e = 1; e < 25; e++) {
+            account.tell(new Deposit(e, balance -> { }));
+        }
+        Assertions.assertEquals(25 * 24 / 2 + 25, account.<Long>ask(replyTo -> new Deposit(25, replyTo),
+                5, TimeUnit.SECONDS).get());
+        int segments = journal.getSegmentsNumber();
+        journal.close();
+        Assertions.assertEquals(segments, countFiles(directory, ".segment"));
+        Assertions.assertEquals(1, countFiles(directory.resolve("snapshots"), ".snapshot"));
+
+        EventJournal reopened = new EventJournal(directory, 256);
+        Account recovered = new Account("account", reopened, 10);
+        ActorRef<Deposit> ref = actorSystem.actorOf(recovered);
+        Assertions.assertEquals(25 * 26 / 2, getBalance(ref));
+        // the snapshot covers the first 20 events
+        Assertions.assertEquals(5, recovered.replayedEvents);
+        Assertions.assertEquals(25, recovered.getSequenceNr());
+        reopened.close();
+    }
+
+    @Test
+    void coveredSegmentsAreDeleted(@TempDir Path directory) throws Exception {
+        ActorSystem actorSystem = new ActorSystem(1);
+        EventJournal journal = new EventJournal(directory, 256);
+        // the first segment is kept until this actor saves its snapshot
+        ActorRef<Deposit> late = actorSystem.actorOf(new Account("late", journal, 2));
+        Assertions.assertEquals(1L, late.<Long>ask(replyTo -> new Deposit(1, replyTo),
+                5, TimeUnit.SECONDS).get());
+        ActorRef<Deposit> account = actorSystem.actorOf(new Account("account", journal, 10));
+        for (int e = 1; e < 100; e++) {
+            account.tell(new Deposit(e, balance -> { }));
+        }
+        Assertions.assertEquals(100 * 101 / 2, account.<Long>ask(replyTo -> new Deposit(100, replyTo),
+                5, TimeUnit.SECONDS).get());
+        int segments = journal.getSegmentsNumber();
+        Assertions.assertTrue(segments > 10);
+        Assertions.assertEquals(0, journal.deleteCoveredSegments());
+
+        Assertions.assertEquals(3L, late.<Long>ask(replyTo -> new Deposit(2, replyTo), 5, TimeUnit.SECONDS).get());
+        Assertions.assertTrue(journal.deleteCoveredSegments() > 0);
+        Assertions.assertTrue(journal.getSegmentsNumber() < segments);
+        Assertions.assertEquals(journal.getSegmentsNumber(), countFiles(directory, ".segment"));
+        journal.close();
+
+        EventJournal reopened = new EventJournal(directory, 256);
+        Account recovered = new Account("account", reopened, 10);
+        Assertions.assertEquals(100 * 101 / 2, getBalance(actorSystem.actorOf(recovered)));
+        Assertions.assertEquals(0, recovered.replayedEvents);
+        Assertions.assertEquals(100, recovered.getSequenceNr());
+        Assertions.assertEquals(3L, getBalance(actorSystem.actorOf(new Account("late", reopened, 2))));
+        reopened.close();
+    }
+
+    @Test
+    void tornTailIsDiscarded(@TempDir Path directory) throws Exception {
+        ActorSystem actorSystem = new ActorSystem(1);
+        EventJournal journal = new EventJournal(directory, 4096);
+        ActorRef<Deposit> account = actorSystem.actorOf(new Account("account", journal, 0));
+        Assertions.assertEquals(7L, account.<Long>ask(replyTo -> new Deposit(7, replyTo), 5, TimeUnit.SECONDS).get());
+        journal.close();
+
+        // a record whose length was written, but its content wasn't
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(file -> file.toString().endsWith(".segment")).findFirst().orElseThrow();
+        }
+        byte[] bytes = Files.readAllBytes(segment);
+        int end = ByteBuffer.wrap(bytes).getInt(0);
+        ByteBuffer.wrap(bytes).putInt(end, 100);
+        Files.write(segment, bytes);
+
+        EventJournal reopened = new EventJournal(directory, 4096);
+        ActorRef<Deposit> recovered = actorSystem.actorOf(new Account("account", reopened, 0));
+        Assertions.assertEquals(10L, recovered.<Long>ask(replyTo -> new Deposit(3, replyTo), 5, TimeUnit.SECONDS).get());
+        reopened.close();
+
+        EventJournal again = new EventJournal(directory, 4096);
+        Assertions.assertEquals(10L, getBalance(actorSystem.actorOf(new Account("account", again, 0))));
+        again.close();
+    }
+
+    @Test
+    void tailLostAfterSnapshot(@TempDir Path directory) throws Exception {
+        ActorSystem actorSystem = new ActorSystem(1);
+        EventJournal journal = new EventJournal(directory, 4096);
+        ActorRef<Deposit> account = actorSystem.actorOf(new Account("account", journal, 10));
+        for (int e = 1; e < 25; e++) {
+            account.tell(new Deposit(e, balance -> { }));
+        }
+        Assertions.assertEquals(25 * 26 / 2, account.<Long>ask(replyTo -> new Deposit(25, replyTo),
+                5, TimeUnit.SECONDS).get());
+        journal.close();
+
+        // the tail is lost from the 15th event, before the position recorded by the snapshot of 20 events
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(file -> file.toString().endsWith(".segment")).findFirst().orElseThrow();
+        }
+        byte[] bytes = Files.readAllBytes(segment);
+        int recordLength = ByteBuffer.wrap(bytes).getInt(0);
+        Arrays.fill(bytes, 14 * recordLength, bytes.length, (byte) 0);
+        Files.write(segment, bytes);
+
+        EventJournal reopened = new EventJournal(directory, 4096);
+        Account recovered = new Account("account", reopened, 10);
+        ActorRef<Deposit> ref = actorSystem.actorOf(recovered);
+        Assertions.assertEquals(20 * 21 / 2 + 100, ref.<Long>ask(replyTo -> new Deposit(100, replyTo),
+                5, TimeUnit.SECONDS).get());
+        Assertions.assertEquals(21, recovered.getSequenceNr());
+        reopened.close();
+
+        EventJournal reopenedAgain = new EventJournal(directory, 4096);
+        ActorRef<Deposit> again = actorSystem.actorOf(new Account("account", reopenedAgain, 10));
+        Assertions.assertEquals(20 * 21 / 2 + 100, getBalance(again));
+        reopenedAgain.close();
+    }
+
+    @Test
+    void snapshotIntervalRequiresCodec(@TempDir Path directory) throws Exception {
+        EventJournal journal = new EventJournal(directory);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new PersistentActor<Long, Long>("raw",
+                journal, 10) {
+            @Override
+            protected void onMessage(Long message) {
+                persist(message);
+            }
+
+            @Override
+            protected void onEvent(Long event) {
+            }
+
+            @Override
+            protected byte[] serializeEvent(Long event) {
+                return new byte[0];
+            }
+
+            @Override
+            protected Long deserializeEvent(byte[] bytes) {
+                return 0L;
+            }
+        });
+        journal.close();
+    }
+
+    private static long getBalance(ActorRef<Deposit> account) throws Exception {
+        return account.<Long>ask(replyTo -> new Deposit(0, replyTo), 5, TimeUnit.SECONDS).get();
+    }
+
+    private static long countFiles(Path directory, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(suffix)).count();
+        }
+    }
+}
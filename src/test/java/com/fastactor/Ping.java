@@ -69,6 +69,15 @@ public class Ping extends Actor<Ping.Message> {
         }
     }
 
+    @Override
+    protected void postStop() {
+        if (pongs != null) {
+            for (ActorRef<Ping.Message> pong : pongs) {
+                stop(pong);
+            }
+        }
+    }
+
     @Override
     protected void onMessage(Ping.Message message) {
         Integer previousValue = lastValues.get(message.sender);
@@ -0,0 +1,116 @@
+package com.fastactor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+class PrimitiveActorTest {
+
+    private static class Sum extends LongActor {
+        private final CountDownLatch latch;
+        private volatile long sum;
+
+        Sum(int mailboxCapacity, CountDownLatch latch) {
+            super("Sum", mailboxCapacity, OverflowStrategy.BLOCK);
+            this.latch = latch;
+        }
+
+        @Override
+        protected void onMessage(long message) {
+            sum += message;
+            latch.countDown();
+        }
+    }
+
+    @Test
+    void longMessagesFromManyProducers() throws InterruptedException {
+        int producers = 4;
+        int messageCount = 100_000;
+        ActorSystem actorSystem = new ActorSystem(2);
+        CountDownLatch latch = new CountDownLatch(producers * messageCount);
+        Sum actor = new Sum(64, latch);
+        LongActorRef ref = actorSystem.actorOf(actor);
+
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            threads[p] = new Thread(() -> {
+                for (int m = 1; m <= messageCount; m++) {
+                    ref.tell((long) m);
+                }
+            });
+            threads[p].start();
+        }
+
+        Assertions.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assertions.assertEquals((long) producers * messageCount * (messageCount + 1) / 2, actor.sum);
+        Assertions.assertTrue(actor.getMailbox().isEmpty());
+    }
+
+    @Test
+    void intAndDoubleMessages() {
+        ActorSystem actorSystem = new ActorSystem(new CallingThreadDispatcher());
+        int[] ints = new int[1];
+        double[] doubles = new double[1];
+        IntActorRef intRef = actorSystem.actorOf(new IntActor("Ints", 16, OverflowStrategy.FAIL) {
+            @Override
+            protected void onMessage(int message) {
+                ints[0] += message;
+            }
+        });
+        DoubleActorRef doubleRef = actorSystem.actorOf(new DoubleActor("Doubles", 16, OverflowStrategy.FAIL) {
+            @Override
+            protected void onMessage(double message) {
+                doubles[0] += message;
+            }
+        });
+
+        intRef.tell(-3);
+        intRef.tell(Integer.valueOf(5));
+        doubleRef.tell(0.25);
+        doubleRef.tell(-1.5);
+        ActorRef<Double> boxedRef = doubleRef;
+        boxedRef.tell(2.0);
+
+        Assertions.assertEquals(2, ints[0]);
+        Assertions.assertEquals(0.75, doubles[0]);
+    }
+
+    @Test
+    void ringMailbox() {
+        PrimitiveRingMailbox<Long> mailbox = new PrimitiveRingMailbox<>(3, bits -> bits, Long::longValue);
+        Assertions.assertEquals(4, mailbox.capacity());
+        for (long m = 0; m < 4; m++) {
+            Assertions.assertTrue(mailbox.offerBits(m));
+        }
+        Assertions.assertFalse(mailbox.offerBits(4));
+        Assertions.assertEquals(4, mailbox.size());
+        Assertions.assertEquals(0L, mailbox.peek());
+        Assertions.assertEquals(0L, mailbox.poll());
+        Assertions.assertTrue(mailbox.offer(4L));
+        // the iterator wraps around the ring
+        Assertions.assertEquals("[1, 2, 3, 4]", mailbox.toString());
+        Assertions.assertTrue(mailbox.contains(4L));
+        for (long m = 1; m <= 4; m++) {
+            Assertions.assertTrue(mailbox.canPoll());
+            Assertions.assertEquals(m, mailbox.pollBits());
+        }
+        Assertions.assertFalse(mailbox.canPoll());
+        Assertions.assertNull(mailbox.poll());
+        Assertions.assertTrue(mailbox.isEmpty());
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new LongActor("DropOldest", 16,
+                OverflowStrategy.DROP_OLDEST) {
+            @Override
+            protected void onMessage(long message) {
+            }
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new LongActor("Empty", 0,
+                OverflowStrategy.BLOCK) {
+            @Override
+            protected void onMessage(long message) {
+            }
+        });
+    }
+}
@@ -0,0 +1,130 @@
+package com.fastactor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+class PriorityTest {
+
+    interface Command {
+        int getPriority();
+    }
+
+    static class Work implements Command {
+        final int id;
+        final int priority;
+
+        Work(int id, int priority) {
+            this.id = id;
+            this.priority = priority;
+        }
+
+        @Override
+        public int getPriority() {
+            return priority;
+        }
+    }
+
+    static class Probe implements Command, ControlMessage {
+        @Override
+        public int getPriority() {
+            return 0;
+        }
+    }
+
+    private static class Worker extends Actor<Command> {
+        private final CountDownLatch release;
+        private final BlockingQueue<String> trace;
+
+        Worker(CountDownLatch release, BlockingQueue<String> trace) {
+            super("Worker", () -> new PriorityMailbox<>(3, Command::getPriority));
+            this.release = release;
+            this.trace = trace;
+        }
+
+        @Override
+        protected void onMessage(Command message) {
+            if (message instanceof Probe) {
+                trace.offer("probe");
+                return;
+            }
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            trace.offer("work-" + ((Work) message).id);
+        }
+    }
+
+    @Test
+    void controlMessageSkipsBacklog() throws InterruptedException {
+        ActorSystem actorSystem = new ActorSystem(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingQueue<String> trace = new LinkedBlockingDeque<>();
+        ActorRef<Command> ref = actorSystem.actorOf(new Worker(release, trace));
+
+        // the worker blocks in work-0, so the probe can't be processed before it
+        ref.tell(new Work(0, 1));
+        Assertions.assertTrue(waitUntilEmpty(ref));
+        for (int i = 1; i < 1000; i++) {
+            ref.tell(new Work(i, 1));
+        }
+        ref.tell(new Probe());
+        release.countDown();
+
+        Assertions.assertEquals("work-0", trace.poll(5, TimeUnit.SECONDS));
+        Assertions.assertEquals("probe", trace.poll(5, TimeUnit.SECONDS));
+        Assertions.assertEquals("work-1", trace.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void priorityBands() throws InterruptedException {
+        ActorSystem actorSystem = new ActorSystem(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingQueue<String> trace = new LinkedBlockingDeque<>();
+        ActorRef<Command> ref = actorSystem.actorOf(new Worker(release, trace));
+
+        ref.tell(new Work(0, 1));
+        Assertions.assertTrue(waitUntilEmpty(ref));
+        ref.tellAll(List.of(new Work(1, 2), new Work(2, 1), new Work(3, 0), new Work(4, 2), new Work(5, 0)));
+        release.countDown();
+
+        for (int id : new int[]{0, 3, 5, 2, 1, 4}) {
+            Assertions.assertEquals("work-" + id, trace.poll(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void invalidPriority() {
+        PriorityMailbox<Integer> mailbox = new PriorityMailbox<>(2, message -> message);
+        Assertions.assertTrue(mailbox.offer(1));
+        Assertions.assertTrue(mailbox.offer(0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> mailbox.offer(2));
+        Assertions.assertEquals(2, mailbox.size());
+        Assertions.assertTrue(mailbox.contains(1));
+        Assertions.assertEquals("[0, 1]", mailbox.toString());
+        Assertions.assertEquals(0, mailbox.poll());
+        Assertions.assertEquals(1, mailbox.poll());
+        Assertions.assertTrue(mailbox.isEmpty());
+    }
+
+    /**
+     * The first message is being processed when the mailbox is empty.
+     */
+    private static boolean waitUntilEmpty(ActorRef<Command> ref) throws InterruptedException {
+        Actor<?> actor = Actor.getActor(ref);
+        for (int i = 0; i < 5000; i++) {
+            if (actor.getMailbox().isEmpty()) {
+                return true;
+            }
+            Thread.sleep(1);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,386 @@
+package com.fastactor;
+
+import org.jctools.queues.MpscLinkedQueue;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+class RouterTest {
+
+    private static class CountingActor extends Actor<Integer> {
+        private final AtomicInteger count = new AtomicInteger();
+        private final CountDownLatch latch;
+
+        CountingActor(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        protected void onMessage(Integer message) {
+            count.incrementAndGet();
+            latch.countDown();
+        }
+    }
+
+    @Test
+    void roundRobinOnCallerThread() throws InterruptedException {
+        int senders = 4;
+        int messageCount = 10_000;
+        int poolSize = 8;
+        ActorSystem actorSystem = new ActorSystem(2);
+        CountDownLatch latch = new CountDownLatch(senders * messageCount);
+        List<Actor<Integer>> actors = Router.supplierToList(() -> new CountingActor(latch), poolSize);
+        Router<Integer, Integer> router = new Router<>(new Router.RoundRobinRoutingLogic<>(), actors);
+        router.setRoutingOnCallerThread(true);
+        ActorRef<Integer> ref = actorSystem.actorOf(router);
+
+        Thread[] threads = new Thread[senders];
+        for (int t = 0; t < senders; t++) {
+            threads[t] = new Thread(() -> {
+                for (int m = 0; m < messageCount; m++) {
+                    ref.tell(m);
+                }
+            });
+            threads[t].start();
+        }
+
+        Assertions.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        for (Actor<Integer> actor : actors) {
+            Assertions.assertEquals(senders * messageCount / poolSize, ((CountingActor) actor).count.get());
+            // only logics which read mailbox sizes need them counted
+            Assertions.assertFalse(actor.getMailbox() instanceof SizeTrackingMailbox);
+        }
+    }
+
+    @Test
+    void broadcastBatchOnCallerThread() throws InterruptedException {
+        ActorSystem actorSystem = new ActorSystem(new CallingThreadDispatcher());
+        CountDownLatch latch = new CountDownLatch(3 * 4);
+        Router<Integer, Integer> router = new Router<>(new Router.BroadcastRoutingLogic<>(),
+                () -> new CountingActor(latch), 4);
+        router.setRoutingOnCallerThread(true);
+        ActorRef<Integer> ref = actorSystem.actorOf(router);
+
+        ref.tellAll(new Integer[]{1, 2, 3});
+
+        Assertions.assertEquals(0, latch.getCount());
+        actorSystem.stop(ref);
+        Assertions.assertEquals(0, actorSystem.getActorsNumber());
+    }
+
+    @Test
+    void smallestMailbox() throws InterruptedException {
+        ActorSystem actorSystem = new ActorSystem(4);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch latch = new CountDownLatch(1000);
+        AtomicInteger slowCount = new AtomicInteger();
+        Actor<Integer> slow = new Actor<Integer>() {
+            @Override
+            protected void onMessage(Integer message) {
+                slowCount.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                latch.countDown();
+            }
+        };
+        CountingActor fast = new CountingActor(latch);
+        Router<Integer, Integer> router = new Router<>(new Router.SmallestMailboxRoutingLogic<>(), List.of(slow, fast));
+        router.setRoutingOnCallerThread(true);
+        ActorRef<Integer> ref = actorSystem.actorOf(router);
+
+        for (int m = 0; m < 1000; m++) {
+            ref.tell(m);
+            // the fast routee drains its mailbox, the slow one is stuck
+            while (fast.getMailbox().size() > 0) {
+                Thread.onSpinWait();
+            }
+        }
+        Assertions.assertTrue(slowCount.get() <= 2);
+        Assertions.assertTrue(fast.getMailbox() instanceof SizeTrackingMailbox);
+        release.countDown();
+        Assertions.assertTrue(latch.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void powerOfTwoChoices() throws InterruptedException {
+        ActorSystem actorSystem = new ActorSystem(new CallingThreadDispatcher());
+        CountDownLatch latch = new CountDownLatch(100);
+        ActorRef<Integer> ref = actorSystem.actorOf(new Router<>(new Router.SmallestMailboxRoutingLogic<>(2),
+                () -> new CountingActor(latch), 32));
+        for (int m = 0; m < 100; m++) {
+            ref.tell(m);
+        }
+
+        Assertions.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new Router.SmallestMailboxRoutingLogic<>(0));
+    }
+
+    @Test
+    void mailboxSizeTracking() {
+        SizeTrackingMailbox<Integer> mailbox = new SizeTrackingMailbox<>(new MpscLinkedQueue<>());
+        for (int m = 0; m < 10; m++) {
+            mailbox.offer(m);
+        }
+        Assertions.assertEquals(10, mailbox.size());
+        Assertions.assertEquals(0, mailbox.poll());
+        Assertions.assertEquals(9, mailbox.size());
+        mailbox.clear();
+        Assertions.assertEquals(0, mailbox.size());
+        Assertions.assertTrue(mailbox.isEmpty());
+    }
+
+    private static class NamedRoutee implements Routee<Long>, ActorRef<Long> {
+        private final String name;
+        private int received;
+
+        NamedRoutee(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void tell(Long message) {
+            received++;
+        }
+
+        @Override
+        public int getMailboxSize() {
+            return 0;
+        }
+
+        @Override
+        public ActorRef<Long> getActorRef() {
+            return this;
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode();
+        }
+    }
+
+    @Test
+    void consistentHashingRing() {
+        Router.ConsistentHashingRoutingLogic<Long, Long> logic = new Router.ConsistentHashingRoutingLogic<>(key -> key);
+        List<Routee<Long>> routees = new ArrayList<>();
+        for (int r = 0; r < 8; r++) {
+            routees.add(new NamedRoutee("Routee-" + r));
+        }
+        int keys = 100_000;
+        Router.HashRing<Long> ring = new Router.HashRing<>(routees, 100);
+        Routee<?>[] owners = new Routee<?>[keys];
+        for (int k = 0; k < keys; k++) {
+            logic.select((long) -k, routees);
+            owners[k] = ring.get(-k);
+        }
+        for (Routee<Long> routee : routees) {
+            // 100 virtual nodes keep every routee close to 1/8 of keys
+            Assertions.assertTrue(Math.abs(((NamedRoutee) routee).received - keys / 8) < keys / 8 / 3);
+        }
+
+        List<Routee<Long>> resized = new ArrayList<>(routees);
+        resized.add(new NamedRoutee("Routee-8"));
+        Router.HashRing<Long> resizedRing = new Router.HashRing<>(resized, 100);
+        int moved = 0;
+        for (int k = 0; k < keys; k++) {
+            Routee<Long> owner = resizedRing.get(-k);
+            if (owner != owners[k]) {
+                moved++;
+                Assertions.assertSame(resized.get(8), owner);
+            }
+        }
+        Assertions.assertTrue(moved > keys / 9 / 2 && moved < keys / 9 * 2);
+    }
+
+    @Test
+    void consistentHashingEqualNames() {
+        Router.ConsistentHashingRoutingLogic<Long, Long> logic = new Router.ConsistentHashingRoutingLogic<>(key -> key);
+        List<Routee<Long>> routees = new ArrayList<>();
+        for (int r = 0; r < 8; r++) {
+            routees.add(new NamedRoutee("Routee"));
+        }
+        int keys = 100_000;
+        for (int k = 0; k < keys; k++) {
+            logic.select((long) k, routees);
+        }
+        for (Routee<Long> routee : routees) {
+            Assertions.assertTrue(Math.abs(((NamedRoutee) routee).received - keys / 8) < keys / 8 / 3);
+        }
+    }
+
+    @Test
+    void notThreadSafeLogic() {
+        Router<Integer, Integer> router = new Router<>((message, routees) -> routees.get(0).getActorRef().tell(message),
+                () -> new CountingActor(new CountDownLatch(1)), 2);
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> router.setRoutingOnCallerThread(true));
+    }
+
+    @Test
+    void resizer() throws InterruptedException {
+        ActorSystem actorSystem = new ActorSystem(4);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch latch = new CountDownLatch(100);
+        Router<Integer, Integer> router = new Router<>(new Router.SmallestMailboxRoutingLogic<>(), () -> new Actor<Integer>() {
+            @Override
+            protected void onMessage(Integer message) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                latch.countDown();
+            }
+        }, 1);
+        router.setResizer(new Router.Resizer(1, 4, 1, 10, 50, TimeUnit.MILLISECONDS));
+        ActorRef<Integer> ref = actorSystem.actorOf(router);
+
+        for (int m = 0; m < 100 && router.getPoolSize() < 4; m++) {
+            ref.tell(m);
+            Thread.sleep(5);
+        }
+        Assertions.assertEquals(4, router.getPoolSize());
+        release.countDown();
+        Assertions.assertTrue(waitFor(() -> router.getPoolSize() == 1));
+        // the router and its last routee
+        Assertions.assertTrue(waitFor(() -> actorSystem.getActorsNumber() == 2));
+
+        actorSystem.stop(ref);
+        Assertions.assertTrue(waitFor(() -> actorSystem.getActorsNumber() == 0));
+    }
+
+    @Test
+    void resizerRequiresFactory() {
+        Router<Integer, Integer> router = new Router<>(new Router.RoundRobinRoutingLogic<>(),
+                List.of(new CountingActor(new CountDownLatch(1))));
+
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> router.setResizer(new Router.Resizer(1, 2, 1, 1, 1, TimeUnit.SECONDS)));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new Router.Resizer(2, 1, 1, 1, 1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void balancingPool() throws InterruptedException {
+        ActorSystem actorSystem = new ActorSystem(4);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch latch = new CountDownLatch(1000);
+        Router<Integer, Integer> router = new Router<>(new Router.BalancingRoutingLogic<>(), () -> new Actor<Integer>() {
+            @Override
+            protected void onMessage(Integer message) {
+                if (message == 0) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                latch.countDown();
+            }
+        }, 4);
+        router.setRoutingOnCallerThread(true);
+        ActorRef<Integer> ref = actorSystem.actorOf(router);
+
+        for (int m = 0; m < 1000; m++) {
+            ref.tell(m);
+        }
+        // nothing waits behind the slow message
+        Assertions.assertTrue(waitFor(() -> latch.getCount() == 1));
+        release.countDown();
+        Assertions.assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+        actorSystem.stop(ref);
+        Assertions.assertTrue(waitFor(() -> actorSystem.getActorsNumber() == 0));
+    }
+
+    private static final class Lookup {
+        final int key;
+        final ActorRef<String> replyTo;
+
+        Lookup(int key, ActorRef<String> replyTo) {
+            this.key = key;
+            this.replyTo = replyTo;
+        }
+
+        ActorRef<String> getReplyTo() {
+            return replyTo;
+        }
+    }
+
+    private static class Replica extends Actor<Lookup> {
+        private final long delay;
+        private final AtomicInteger requests;
+
+        Replica(String name, long delay, AtomicInteger requests) {
+            super(name);
+            this.delay = delay;
+            this.requests = requests;
+        }
+
+        @Override
+        protected void onMessage(Lookup message) {
+            requests.incrementAndGet();
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            message.replyTo.tell(getName() + "-" + message.key);
+        }
+    }
+
+    @Test
+    void scatterGatherFirstCompleted() throws Exception {
+        ActorSystem actorSystem = new ActorSystem(4);
+        AtomicInteger requests = new AtomicInteger();
+        List<Actor<Lookup>> replicas = List.of(new Replica("slow", 300, requests), new Replica("fast", 0, requests),
+                new Replica("medium", 100, requests));
+        ActorRef<Lookup> ref = actorSystem.actorOf(new Router<>(
+                new Router.ScatterGatherFirstCompletedRoutingLogic<>(Lookup::getReplyTo, (m, r) -> new Lookup(m.key, r)),
+                replicas));
+
+        Assertions.assertEquals("fast-7", ref.<String>ask(replyTo -> new Lookup(7, replyTo), 5, TimeUnit.SECONDS).get());
+        Assertions.assertTrue(waitFor(() -> requests.get() == 3));
+    }
+
+    @Test
+    void tailChopping() throws Exception {
+        ActorSystem actorSystem = new ActorSystem(4);
+        AtomicInteger requests = new AtomicInteger();
+        List<Actor<Lookup>> replicas = new ArrayList<>();
+        for (int r = 0; r < 3; r++) {
+            replicas.add(new Replica("slow", 2000, requests));
+        }
+        replicas.add(new Replica("fast", 0, requests));
+        Router<Lookup, Lookup> router = new Router<>(new Router.TailChoppingRoutingLogic<>(actorSystem, 20,
+                TimeUnit.MILLISECONDS, Lookup::getReplyTo, (m, r) -> new Lookup(m.key, r)), replicas);
+        router.setRoutingOnCallerThread(true);
+        ActorRef<Lookup> ref = actorSystem.actorOf(router);
+
+        long start = System.nanoTime();
+        Assertions.assertEquals("fast-1", ref.<String>ask(replyTo -> new Lookup(1, replyTo), 5, TimeUnit.SECONDS).get());
+        Assertions.assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1000));
+        int sent = requests.get();
+        // the reply cancels the rest of the chopping
+        Thread.sleep(100);
+        Assertions.assertEquals(sent, requests.get());
+    }
+
+    private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 5000; i++) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            Thread.sleep(1);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,125 @@
+package com.fastactor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class SchedulerTest {
+
+    private static class Recorder extends Actor<String> {
+        private final BlockingQueue<String> received = new LinkedBlockingDeque<>();
+
+        @Override
+        protected void onMessage(String message) {
+            received.offer(message);
+        }
+    }
+
+    @Test
+    void scheduleOnce() throws InterruptedException {
+        ActorSystem actorSystem = new ActorSystem(1);
+        Recorder recorder = new Recorder();
+        ActorRef<String> ref = actorSystem.actorOf(recorder);
+
+        long start = System.nanoTime();
+        Cancellable cancellable = actorSystem.scheduleOnce(50, TimeUnit.MILLISECONDS, ref, "timeout");
+
+        Assertions.assertEquals("timeout", recorder.received.poll(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        Assertions.assertFalse(cancellable.isPending());
+        Assertions.assertFalse(cancellable.cancel());
+    }
+
+    @Test
+    void cancel() throws InterruptedException {
+        ActorSystem actorSystem = new ActorSystem(1);
+        Recorder recorder = new Recorder();
+        ActorRef<String> ref = actorSystem.actorOf(recorder);
+
+        Cancellable cancelled = actorSystem.scheduleOnce(20, TimeUnit.MILLISECONDS, ref, "cancelled");
+        Assertions.assertTrue(cancelled.cancel());
+        Assertions.assertTrue(cancelled.isCancelled());
+        actorSystem.scheduleOnce(100, TimeUnit.MILLISECONDS, ref, "sent");
+
+        Assertions.assertEquals("sent", recorder.received.poll(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(recorder.received.isEmpty());
+    }
+
+    @Test
+    void fixedRate() throws InterruptedException {
+        ActorSystem actorSystem = new ActorSystem(1);
+        CountDownLatch latch = new CountDownLatch(5);
+        AtomicInteger count = new AtomicInteger();
+        ActorRef<String> ref = actorSystem.actorOf(new Actor<String>() {
+            @Override
+            protected void onMessage(String message) {
+                count.incrementAndGet();
+                latch.countDown();
+            }
+        });
+
+        Cancellable cancellable = actorSystem.scheduleAtFixedRate(0, 10, TimeUnit.MILLISECONDS, ref, "tick");
+        Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(cancellable.isPending());
+        Assertions.assertTrue(cancellable.cancel());
+
+        Thread.sleep(50);
+        Assertions.assertTrue(actorSystem.waitOnIdle(5, TimeUnit.SECONDS));
+        int afterCancel = count.get();
+        Thread.sleep(50);
+        Assertions.assertEquals(afterCancel, count.get());
+    }
+
+    @Test
+    void namedTimerIsReplaced() throws InterruptedException {
+        ActorSystem actorSystem = new ActorSystem(1);
+        BlockingQueue<String> received = new LinkedBlockingDeque<>();
+        actorSystem.actorOf(new Actor<String>() {
+            @Override
+            protected void preStart() {
+                startSingleTimer("key", "first", 50, TimeUnit.MILLISECONDS);
+                startSingleTimer("key", "second", 100, TimeUnit.MILLISECONDS);
+                startTimerAtFixedRate("periodic", "periodic", 10, 10, TimeUnit.MILLISECONDS);
+            }
+
+            @Override
+            protected void onMessage(String message) {
+                if (message.equals("periodic")) {
+                    cancelTimer("periodic");
+                    received.offer(isTimerActive("periodic") + " " + isTimerActive("key"));
+                } else {
+                    received.offer(message + " " + isTimerActive("key"));
+                }
+            }
+        });
+
+        Assertions.assertEquals("false true", received.poll(5, TimeUnit.SECONDS));
+        Assertions.assertEquals("second false", received.poll(5, TimeUnit.SECONDS));
+        Assertions.assertNull(received.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void manyRoundsOfSmallWheel() throws InterruptedException {
+        HashedWheelTimer timer = new HashedWheelTimer("Test-Timer", 1, TimeUnit.MILLISECONDS, 3);
+        Assertions.assertEquals(4, timer.getWheelSize());
+        BlockingQueue<Integer> received = new LinkedBlockingDeque<>();
+        ActorRef<Integer> ref = received::offer;
+
+        timer.schedule(ref, 3, TimeUnit.MILLISECONDS.toNanos(30), 0);
+        timer.schedule(ref, 2, TimeUnit.MILLISECONDS.toNanos(20), 0);
+        timer.schedule(ref, 1, TimeUnit.MILLISECONDS.toNanos(10), 0);
+        for (int i = 0; i < 1000; i++) {
+            timer.schedule(ref, -1, TimeUnit.MILLISECONDS.toNanos(5), 0).cancel();
+        }
+
+        Assertions.assertEquals(1, received.poll(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(2, received.poll(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(3, received.poll(5, TimeUnit.SECONDS));
+        Assertions.assertNull(received.poll(20, TimeUnit.MILLISECONDS));
+    }
+}